@@ -1,5 +1,7 @@
 package ca.alexcomeau.texmobile.activities;
 
+import android.app.ActivityManager;
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.drawable.NinePatchDrawable;
 import android.media.AudioManager;
@@ -10,42 +12,55 @@ import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import ca.alexcomeau.texmobile.game.Autosaver;
+import ca.alexcomeau.texmobile.game.FrameMetrics;
+import ca.alexcomeau.texmobile.game.GLGameView;
 import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.GameSurface;
 import ca.alexcomeau.texmobile.game.GameView;
+import ca.alexcomeau.texmobile.game.HudModel;
+import ca.alexcomeau.texmobile.game.Input;
+import ca.alexcomeau.texmobile.game.ParcelableGame;
+import ca.alexcomeau.texmobile.game.ReplayRecorder;
 import ca.alexcomeau.texmobile.R;
-import ca.alexcomeau.texmobile.db.ScoreDBManager;
+import ca.alexcomeau.texmobile.db.Leaderboard;
+import ca.alexcomeau.texmobile.db.ScoreRepository;
 import ca.alexcomeau.texmobile.game.Block;
 
 public class GameActivity extends AppCompatActivity{
-    private GameView gameView;
-    private List<String> input;
+    private GameSurface gameView;
+    // Mask of Input bits for the buttons being held. Written by the UI thread, read by the game thread.
+    private AtomicInteger input;
     private MediaPlayer mp;
     private SoundPool sp;
     private int[] soundEffects;
     private float volume;
-    private ImageView imgNext;
-    private TextView txtScore;
-    private TextView txtLevel;
-    private Hashtable<Block.Shape, NinePatchDrawable> nextPieces;
+    private HudModel hud;
+    private Autosaver autosaver;
+    // Set while the high score check is out, so more button presses don't start another
+    private boolean checkingScore;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_game);
 
-        input = new ArrayList<>();
-        gameView = (GameView) findViewById(R.id.svBoard);
-        txtScore = (TextView) findViewById(R.id.txtScore);
-        txtLevel = (TextView) findViewById(R.id.txtLevel);
-        imgNext = (ImageView) findViewById(R.id.imgNext);
+        input = new AtomicInteger();
+        autosaver = new Autosaver(this);
+        gameView = createBoard();
 
         volume = getSharedPreferences("volume", 0).getInt("music", 100) / 100.0f;
         mp = MediaPlayer.create(this, R.raw.all_of_us);
@@ -66,7 +81,7 @@ public class GameActivity extends AppCompatActivity{
         volume = getSharedPreferences("volume", 0).getInt("sound", 100) / 100.0f;
 
         // Get all the drawables
-        nextPieces = new Hashtable<>();
+        EnumMap<Block.Shape, NinePatchDrawable> nextPieces = new EnumMap<>(Block.Shape.class);
         nextPieces.put(Block.Shape.I, (NinePatchDrawable) ContextCompat.getDrawable(this, R.drawable.next_piece_i));
         nextPieces.put(Block.Shape.J, (NinePatchDrawable) ContextCompat.getDrawable(this, R.drawable.next_piece_j));
         nextPieces.put(Block.Shape.L, (NinePatchDrawable) ContextCompat.getDrawable(this, R.drawable.next_piece_l));
@@ -75,6 +90,9 @@ public class GameActivity extends AppCompatActivity{
         nextPieces.put(Block.Shape.T, (NinePatchDrawable) ContextCompat.getDrawable(this, R.drawable.next_piece_t));
         nextPieces.put(Block.Shape.Z, (NinePatchDrawable) ContextCompat.getDrawable(this, R.drawable.next_piece_z));
 
+        hud = new HudModel((TextView) findViewById(R.id.txtScore), (TextView) findViewById(R.id.txtLevel),
+                (ImageView) findViewById(R.id.imgNext), nextPieces, getString(R.string.scoreLabel), getString(R.string.levelLabel));
+
         // Wire up all the buttons
         List<ImageButton> btns = new ArrayList<>();
         btns.add((ImageButton) findViewById(R.id.btnDown2));
@@ -85,6 +103,9 @@ public class GameActivity extends AppCompatActivity{
         btns.add((ImageButton) findViewById(R.id.btnRotateRight));
 
         for(ImageButton b : btns)
+        {
+            // The tags say which button it is. The invisible spare button doesn't have one.
+            final int button = b.getTag() == null ? 0 : Input.fromName(b.getTag().toString());
             b.setOnTouchListener(new View.OnTouchListener() {
                 @Override
                 public boolean onTouch(View v, MotionEvent event)
@@ -93,11 +114,11 @@ public class GameActivity extends AppCompatActivity{
                         case MotionEvent.ACTION_DOWN:
                         {
                             v.setPressed(true);
-                            String tag = v.getTag().toString();
-                            if(!input.contains(tag))
-                                input.add(tag);
+                            press(button);
 
-                            if (gameView.getGame().getGameOver() != null)
+                            // A resumed game might still be loading
+                            GameManager game = gameView.getGame();
+                            if (game != null && game.getGameOver() != null)
                                 gameOver();
 
                             return true;
@@ -105,49 +126,121 @@ public class GameActivity extends AppCompatActivity{
                         case MotionEvent.ACTION_UP:
                         {
                             v.setPressed(false);
-                            input.remove(v.getTag().toString());
+                            release(button);
                             return true;
                         }
                     }
                     return false;
                 }
             });
+        }
+
+        // Frame timing, for tracking down slowdowns
+        if(getSharedPreferences("debug", 0).getBoolean("metrics", false))
+            gameView.setMetrics(new FrameMetrics(), true);
 
-        if(savedInstanceState == null)
+        // The game isn't there to save if it was still loading, so then it's loaded again
+        ParcelableGame saved = null;
+        if(savedInstanceState != null)
         {
-            Intent intent = getIntent();
-            gameView.setupGame(intent.getIntExtra("startLevel", 0), intent.getIntExtra("maxLevel", 999), this);
+            saved = savedInstanceState.getParcelable("game");
+            mp.seekTo(savedInstanceState.getInt("songPosition"));
         }
-        else
+
+        if(saved != null)
+            gameView.setupGame(saved.getGame(), this);
+        else if(getIntent().getBooleanExtra("resume", false))
         {
-            gameView.setupGame((GameManager) savedInstanceState.getParcelable("game"), this);
-            mp.seekTo(savedInstanceState.getInt("songPosition"));
+            // Carry on from the autosave. It's read off the UI thread, the board stays empty until it's in.
+            autosaver.load(new Autosaver.Callback() {
+                @Override
+                public void onLoaded(GameManager game)
+                {
+                    if(!isFinishing() && !isDestroyed())
+                        setupGame(game);
+                }
+            });
         }
+        else
+            setupGame(null);
 
         mp.start();
     }
 
+    // Plays the given game, or a new one from the levels picked if there isn't one
+    private void setupGame(GameManager game)
+    {
+        if(game == null)
+        {
+            Intent intent = getIntent();
+            game = new GameManager();
+            // Keep the input so high scores can be checked by playing them back
+            game.setRecorder(new ReplayRecorder());
+            game.start(intent.getIntExtra("startLevel", 0), intent.getIntExtra("maxLevel", 999));
+        }
+        gameView.setupGame(game, this);
+    }
+
+    // The layout has the canvas board. If the player picked OpenGL and the device can do it, swap in the GL one.
+    private GameSurface createBoard()
+    {
+        GameView canvasBoard = (GameView) findViewById(R.id.svBoard);
+        if(!getSharedPreferences("video", 0).getBoolean("openGl", false))
+            return canvasBoard;
+
+        ActivityManager am = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        if(am.getDeviceConfigurationInfo().reqGlEsVersion < 0x20000)
+            return canvasBoard;
+
+        GLGameView glBoard = new GLGameView(this);
+        ViewGroup parent = (ViewGroup) canvasBoard.getParent();
+        int index = parent.indexOfChild(canvasBoard);
+        glBoard.setId(canvasBoard.getId());
+        parent.removeViewAt(index);
+        parent.addView(glBoard, index, canvasBoard.getLayoutParams());
+        return glBoard;
+    }
+
     public void playSound(int i) { sp.play(soundEffects[i], volume, volume, 1, 0, 1.0f); }
 
     private void gameOver()
     {
-        // Check if it's a new high score
-        ScoreDBManager scores = new ScoreDBManager(this);
-        scores.open();
-        int lowestScore = scores.getLowestScore();
-        scores.close();
+        if(checkingScore)
+            return;
+        checkingScore = true;
 
-        if(gameView.getGame().getScore() > lowestScore)
-        {
-            Intent intent = new Intent("ca.alexcomeau.texmobile.EnterScore");
-            startActivityForResult(intent, 1);
-        }
-        else
-        {
-            Intent intent = new Intent("ca.alexcomeau.texmobile.HighScores");
-            finish();
-            startActivity(intent);
-        }
+        // Check if it's a new high score for this mode
+        GameManager game = gameView.getGame();
+        final int score = game.getScore();
+        final Leaderboard board = new Leaderboard(game.getMaxLevel(), game.getStartLevel());
+        ScoreRepository.get(this).getScoreToBeat(board, new ScoreRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer scoreToBeat)
+            {
+                if(isFinishing())
+                    return;
+
+                if(score > scoreToBeat)
+                {
+                    Intent intent = new Intent("ca.alexcomeau.texmobile.EnterScore");
+                    startActivityForResult(intent, 1);
+                }
+                else
+                {
+                    finish();
+                    startActivity(highScores(board));
+                }
+            }
+        });
+    }
+
+    // The high score list, opened on the given table
+    private static Intent highScores(Leaderboard board)
+    {
+        Intent intent = new Intent("ca.alexcomeau.texmobile.HighScores");
+        intent.putExtra("maxLevel", board.maxLevel);
+        intent.putExtra("startLevel", board.startLevel);
+        return intent;
     }
 
     @Override
@@ -158,41 +251,84 @@ public class GameActivity extends AppCompatActivity{
         if (requestCode == 1 && resultCode == RESULT_OK)
         {
             GameManager game = gameView.getGame();
-            // Convert the frames to minutes and seconds
-            String time;
-            int seconds = game.getFrames() / 30; // 30 frames per second
-
-            if(Integer.toString(seconds % 60).length() == 1)
-                time = (seconds / 60) + ":0" + (seconds % 60);
-            else
-                time = (seconds / 60) + ":" + (seconds % 60);
-
-            // Write the high score to the database
-            ScoreDBManager scores = new ScoreDBManager(this);
-            scores.open();
-            scores.writeScore(data.getStringExtra("name"), game.getScore(), time, game.getGrade());
-            scores.close();
-
-            Intent intent = new Intent("ca.alexcomeau.texmobile.HighScores");
+
+            // Write the high score to the database. The high score list reads after this, so it'll be there.
+            Leaderboard board = new Leaderboard(game.getMaxLevel(), game.getStartLevel());
+            ScoreRepository scores = ScoreRepository.get(this);
+            scores.writeScore(board, data.getStringExtra("name"), game.getScore(), game.getFrames(), game.getGrade(), null);
+            if(game.getRecorder() != null)
+                scores.writeReplay(game.getScore(), game.getRecorder().toReplay());
+
             finish();
-            startActivity(intent);
+            startActivity(highScores(board));
         }
+        else
+            checkingScore = false;
     }
 
-    public List<String> getInput() { return input; }
+    private void press(int button)
+    {
+        int held;
+        do {
+            held = input.get();
+        } while(!input.compareAndSet(held, held | button));
+    }
 
-    public void setNextPiece(Block.Shape shape) { imgNext.setBackground(nextPieces.get(shape)); }
-    public void setScore(int score) { txtScore.setText(String.format(getString(R.string.score), score)); }
-    public void setLevel(int curr, int last) { txtLevel.setText(String.format(getString(R.string.level), curr, last)); }
+    private void release(int button)
+    {
+        int held;
+        do {
+            held = input.get();
+        } while(!input.compareAndSet(held, held & ~button));
+    }
+
+    public int getInput() { return input.get(); }
+
+    // The GL board can't draw text, so it gets the message this way
+    public void showGameOver()
+    {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run()
+            {
+                Toast.makeText(GameActivity.this, getString(R.string.gameover) + " " + getString(R.string.pressAny), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    public HudModel getHud() { return hud; }
+    public Autosaver getAutosaver() { return autosaver; }
 
     @Override
     protected void onPause()
     {
         mp.pause();
         gameView.stop();
+        // The game thread has stopped, so the game can be saved from here
+        if(gameView.getGame() != null)
+            autosaver.save(gameView.getGame());
+        dumpMetrics();
         super.onPause();
     }
 
+    // Writes the frame timing histograms out, if they're being kept
+    private void dumpMetrics()
+    {
+        FrameMetrics metrics = gameView.getMetrics();
+        if(metrics == null)
+            return;
+
+        File dir = new File(getFilesDir(), "metrics");
+        if(!dir.exists() && !dir.mkdirs())
+            return;
+
+        try {
+            metrics.dump(new File(dir, "frames_" + System.currentTimeMillis() + ".txt"));
+        } catch (IOException e) {
+            // Not worth bothering the player about
+        }
+    }
+
     @Override
     protected void onResume()
     {
@@ -204,13 +340,16 @@ public class GameActivity extends AppCompatActivity{
     @Override
     public void onSaveInstanceState(Bundle outState)
     {
-        outState.putParcelable("game", gameView.getGame());
+        if(gameView.getGame() != null)
+            outState.putParcelable("game", new ParcelableGame(gameView.getGame()));
         outState.putInt("songPosition", mp.getCurrentPosition());
     }
 
     @Override
     protected void onDestroy()
     {
+        hud.cancel();
+        autosaver.close();
         mp.release();
         sp.release();
         mp = null;
@@ -5,17 +5,32 @@ import android.media.MediaPlayer;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
-import android.widget.TableLayout;
-import android.widget.TableRow;
-import android.widget.TextView;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+import android.widget.Spinner;
+
+import java.util.ArrayList;
 import java.util.List;
 
 import ca.alexcomeau.texmobile.R;
+import ca.alexcomeau.texmobile.db.Leaderboard;
 import ca.alexcomeau.texmobile.db.Score;
-import ca.alexcomeau.texmobile.db.ScoreDBManager;
+import ca.alexcomeau.texmobile.db.ScoreRepository;
 
 public class HighScoreActivity extends AppCompatActivity {
+    // Read the next page when the list gets this close to the end of what's been read
+    private static final int PREFETCH_ROWS = 5;
+
     private MediaPlayer mp;
+    private Spinner spnBoard;
+    private ScoreAdapter adapter;
+    private List<Leaderboard> boards;
+    private Leaderboard board;
+    // Bumped when the table changes, so pages asked for before it are dropped
+    private int generation;
+    private boolean loading, lastPage;
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -41,44 +56,108 @@ public class HighScoreActivity extends AppCompatActivity {
 
         mp.start();
 
-        // Get all the scores
-        ScoreDBManager scoreManager = new ScoreDBManager(this);
-        scoreManager.open();
-        List<Score> scores = scoreManager.getAllScores();
-        scoreManager.close();
+        adapter = new ScoreAdapter(getLayoutInflater());
+        ListView lstScores = (ListView) findViewById(R.id.lstScores);
+        lstScores.setAdapter(adapter);
+        lstScores.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) { }
 
-        TableLayout tl = (TableLayout) findViewById(R.id.tblScores);
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount)
+            {
+                if(firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_ROWS)
+                    loadPage();
+            }
+        });
 
-        // Add all the scores to the table
-        for(Score s : scores)
-        {
-            TableRow row = new TableRow(this);
-            TableRow.LayoutParams lp = new TableRow.LayoutParams(TableRow.LayoutParams.MATCH_PARENT);
-            row.setLayoutParams(lp);
+        spnBoard = (Spinner) findViewById(R.id.spnBoard);
+        spnBoard.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id)
+            {
+                showBoard(boards.get(position));
+            }
 
-            TextView txtName = new TextView(this);
-            txtName.setText(s.name);
-            txtName.setLayoutParams(new TableRow.LayoutParams(1));
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) { }
+        });
 
-            TextView txtScore = new TextView(this);
-            txtScore.setText(Integer.toString(s.score));
-            txtScore.setLayoutParams(new TableRow.LayoutParams(2));
+        // Open on the table of the game just played, if there was one
+        Intent intent = getIntent();
+        final Leaderboard played = intent.hasExtra("maxLevel")
+                ? new Leaderboard(intent.getIntExtra("maxLevel", 999), intent.getIntExtra("startLevel", 0))
+                : null;
+        ScoreRepository.get(this).getLeaderboards(new ScoreRepository.Callback<List<Leaderboard>>() {
+            @Override
+            public void onResult(List<Leaderboard> result)
+            {
+                if(!isFinishing())
+                    showBoards(result, played);
+            }
+        });
+    }
 
-            TextView txtTime = new TextView(this);
-            txtTime.setText(s.time);
-            txtTime.setLayoutParams(new TableRow.LayoutParams(3));
+    private void showBoards(List<Leaderboard> result, Leaderboard selected)
+    {
+        boards = new ArrayList<>(result);
+        if(selected != null && !boards.contains(selected))
+            boards.add(selected);
+        if(boards.isEmpty())
+            return;
+
+        List<String> names = new ArrayList<>(boards.size());
+        for(Leaderboard b : boards)
+            names.add(getString(R.string.leaderboard, modeName(b.maxLevel), b.startLevel));
+        ArrayAdapter<String> boardAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, names);
+        boardAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spnBoard.setAdapter(boardAdapter);
+        // Selecting fires the listener, which shows the table
+        spnBoard.setSelection(selected == null ? 0 : boards.indexOf(selected));
+    }
 
-            TextView txtGrade = new TextView(this);
-            txtGrade.setText(s.grade);
-            txtGrade.setLayoutParams(new TableRow.LayoutParams(4));
+    private String modeName(int maxLevel)
+    {
+        switch(maxLevel)
+        {
+            case 200: return getString(R.string.easy);
+            case 500: return getString(R.string.normal);
+            case 999: return getString(R.string.hard);
+            default: return Integer.toString(maxLevel);
+        }
+    }
 
-            row.addView(txtName);
-            row.addView(txtScore);
-            row.addView(txtTime);
-            row.addView(txtGrade);
+    private void showBoard(Leaderboard selected)
+    {
+        if(selected.equals(board))
+            return;
+        board = selected;
+        generation++;
+        loading = false;
+        lastPage = false;
+        adapter.clear();
+        loadPage();
+    }
 
-            tl.addView(row);
-        }
+    // Reads the page after the last row in the list, unless one's on its way or there are no more
+    private void loadPage()
+    {
+        if(board == null || loading || lastPage)
+            return;
+        loading = true;
+
+        final int requested = generation;
+        ScoreRepository.get(this).getScores(board, adapter.getLast(), new ScoreRepository.Callback<List<Score>>() {
+            @Override
+            public void onResult(List<Score> page)
+            {
+                if(isFinishing() || requested != generation)
+                    return;
+                loading = false;
+                lastPage = page.size() < ScoreRepository.PAGE_SIZE;
+                adapter.addPage(page);
+            }
+        });
     }
 
     public void btnBackClick(View v)
@@ -6,9 +6,11 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.text.method.LinkMovementMethod;
 import android.view.View;
+import android.widget.Button;
 import android.widget.TextView;
 
 import ca.alexcomeau.texmobile.db.DatabaseBundler;
+import ca.alexcomeau.texmobile.game.Autosaver;
 import ca.alexcomeau.texmobile.R;
 
 public class MainActivity extends AppCompatActivity {
@@ -29,6 +31,11 @@ public class MainActivity extends AppCompatActivity {
         TextView txtCredits = (TextView) findViewById(R.id.txtCredits);
         txtCredits.setMovementMethod(LinkMovementMethod.getInstance());
 
+        // Offer to carry on if a game was left unfinished
+        Button btnContinue = (Button) findViewById(R.id.btnContinue);
+        if(btnContinue != null && Autosaver.hasSave(this))
+            btnContinue.setVisibility(View.VISIBLE);
+
         float volume = getSharedPreferences("volume", 0).getInt("music", 100) / 100.0f;
         mp = MediaPlayer.create(this, R.raw.chibi_ninja);
         mp.setVolume(0.7f * volume, 0.7f * volume);
@@ -99,6 +106,14 @@ public class MainActivity extends AppCompatActivity {
         startActivity(intent);
     }
 
+    public void btnContinueClick(View v)
+    {
+        Intent intent = new Intent("ca.alexcomeau.texmobile.Game");
+        intent.putExtra("resume", true);
+        finish();
+        startActivity(intent);
+    }
+
     public void btnSettingsClick(View v)
     {
         Intent intent = new Intent("ca.alexcomeau.texmobile.Settings");
@@ -0,0 +1,84 @@
+package ca.alexcomeau.texmobile.activities;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.alexcomeau.texmobile.R;
+import ca.alexcomeau.texmobile.db.Score;
+
+// The rows of the high score list. Only the rows on screen have views, and those get reused as it scrolls.
+class ScoreAdapter extends BaseAdapter {
+    private final LayoutInflater inflater;
+    // The pages read so far
+    private final ArrayList<Score> scores;
+
+    private static class Holder {
+        TextView name, score, time, grade;
+    }
+
+    ScoreAdapter(LayoutInflater inflater)
+    {
+        this.inflater = inflater;
+        scores = new ArrayList<>();
+    }
+
+    void addPage(List<Score> page)
+    {
+        if(page.isEmpty())
+            return;
+        scores.addAll(page);
+        notifyDataSetChanged();
+    }
+
+    void clear()
+    {
+        scores.clear();
+        notifyDataSetChanged();
+    }
+
+    // Where the next page picks up, or null if nothing's been read
+    Score getLast() { return scores.isEmpty() ? null : scores.get(scores.size() - 1); }
+
+    @Override
+    public int getCount() { return scores.size(); }
+
+    @Override
+    public Score getItem(int position) { return scores.get(position); }
+
+    @Override
+    public long getItemId(int position) { return scores.get(position).id; }
+
+    @Override
+    public boolean hasStableIds() { return true; }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent)
+    {
+        Holder holder;
+        if(convertView == null)
+        {
+            convertView = inflater.inflate(R.layout.row_score, parent, false);
+            holder = new Holder();
+            holder.name = (TextView) convertView.findViewById(R.id.txtRowName);
+            holder.score = (TextView) convertView.findViewById(R.id.txtRowScore);
+            holder.time = (TextView) convertView.findViewById(R.id.txtRowTime);
+            holder.grade = (TextView) convertView.findViewById(R.id.txtRowGrade);
+            convertView.setTag(holder);
+        }
+        else
+            holder = (Holder) convertView.getTag();
+
+        Score s = scores.get(position);
+        holder.name.setText(s.name);
+        holder.score.setText(Integer.toString(s.score));
+        holder.time.setText(s.getTime());
+        holder.grade.setText(s.grade);
+        return convertView;
+    }
+}
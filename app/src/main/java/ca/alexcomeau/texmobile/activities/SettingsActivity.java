@@ -5,16 +5,21 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
 import android.widget.SeekBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 
 import ca.alexcomeau.texmobile.R;
+import ca.alexcomeau.texmobile.db.ScoreRepository;
 
 public class SettingsActivity extends AppCompatActivity {
+    private static final Integer[] RETENTIONS = new Integer[]{10, 20, 50, 100, 500};
+
     private SeekBar seekMusic, seekSound;
     private TextView txtMusic, txtSound;
-    private Spinner spnLevel;
+    private Spinner spnLevel, spnRetention;
+    private CheckBox chkMetrics, chkOpenGl;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -24,12 +29,16 @@ public class SettingsActivity extends AppCompatActivity {
         seekSound = (SeekBar) findViewById(R.id.seekVolSound);
         txtMusic = (TextView) findViewById(R.id.txtMusic);
         txtSound = (TextView) findViewById(R.id.txtSound);
+        chkMetrics = (CheckBox) findViewById(R.id.chkMetrics);
+        chkOpenGl = (CheckBox) findViewById(R.id.chkOpenGl);
 
         // Populate spinner
         spnLevel = (Spinner) findViewById(R.id.spinnerStarts);
         Integer[] levels = new Integer[]{0, 100, 200, 300, 400, 500, 600, 700, 800, 900};
         ArrayAdapter<Integer> adapter = new ArrayAdapter<Integer>(this, android.R.layout.simple_spinner_item, levels);
         spnLevel.setAdapter(adapter);
+        spnRetention = (Spinner) findViewById(R.id.spinnerRetention);
+        spnRetention.setAdapter(new ArrayAdapter<Integer>(this, android.R.layout.simple_spinner_item, RETENTIONS));
 
         // Wire up event listeners
         seekMusic.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
@@ -63,6 +72,12 @@ public class SettingsActivity extends AppCompatActivity {
         seekSound.setProgress(getSharedPreferences("volume", 0).getInt("sound", 100));
         txtMusic.setText(String.format(getString(R.string.volMusic), seekMusic.getProgress()));
         txtSound.setText(String.format(getString(R.string.volSound), seekSound.getProgress()));
+        chkMetrics.setChecked(getSharedPreferences("debug", 0).getBoolean("metrics", false));
+        chkOpenGl.setChecked(getSharedPreferences("video", 0).getBoolean("openGl", false));
+        int retention = ScoreRepository.get(this).getRetention();
+        for(int i = 0; i < RETENTIONS.length; i++)
+            if(RETENTIONS[i] == retention)
+                spnRetention.setSelection(i);
     }
 
     public void btnOkClick(View v)
@@ -70,6 +85,9 @@ public class SettingsActivity extends AppCompatActivity {
         // Remember the name they enter so they don't have to type it again
         getSharedPreferences("volume", 0).edit().putInt("music", seekMusic.getProgress()).commit();
         getSharedPreferences("volume", 0).edit().putInt("sound", seekSound.getProgress()).commit();
+        getSharedPreferences("debug", 0).edit().putBoolean("metrics", chkMetrics.isChecked()).commit();
+        getSharedPreferences("video", 0).edit().putBoolean("openGl", chkOpenGl.isChecked()).commit();
+        ScoreRepository.get(this).setRetention(RETENTIONS[spnRetention.getSelectedItemPosition()]);
 
         // Send the selected start level back to the game activity
         Intent output = new Intent();
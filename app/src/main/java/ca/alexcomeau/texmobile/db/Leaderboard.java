@@ -0,0 +1,25 @@
+package ca.alexcomeau.texmobile.db;
+
+// Which table a score goes in. Games only compare against games with the same start and end levels.
+public final class Leaderboard {
+    public final int maxLevel;
+    public final int startLevel;
+
+    public Leaderboard(int maxLevel, int startLevel)
+    {
+        this.maxLevel = maxLevel;
+        this.startLevel = startLevel;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(!(o instanceof Leaderboard))
+            return false;
+        Leaderboard other = (Leaderboard) o;
+        return maxLevel == other.maxLevel && startLevel == other.startLevel;
+    }
+
+    @Override
+    public int hashCode() { return maxLevel * 31 + startLevel; }
+}
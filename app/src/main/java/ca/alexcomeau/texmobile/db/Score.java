@@ -1,19 +1,37 @@
 package ca.alexcomeau.texmobile.db;
 
+import ca.alexcomeau.texmobile.game.GameManager;
+
 // Data class
 public class Score {
+    // Row id, 0 until it's been written. Breaks ties so paging never skips or repeats a row.
+    public long id;
     public String name;
     public int score;
-    public String time;
+    // How long the game took, in game frames
+    public int frames;
     public String grade;
 
     public Score() {}
 
-    public Score(String n, int s, String t, String g)
+    public Score(String n, int s, int f, String g)
+    {
+        this(0, n, s, f, g);
+    }
+
+    public Score(long i, String n, int s, int f, String g)
     {
+        id = i;
         name = n;
         score = s;
-        time = t;
+        frames = f;
         grade = g;
     }
+
+    // The duration as minutes and seconds
+    public String getTime()
+    {
+        int seconds = frames / GameManager.FRAME_RATE;
+        return (seconds / 60) + (seconds % 60 < 10 ? ":0" : ":") + (seconds % 60);
+    }
 }
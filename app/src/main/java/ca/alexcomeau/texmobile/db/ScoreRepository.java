@@ -0,0 +1,494 @@
+package ca.alexcomeau.texmobile.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.Replay;
+
+// The high scores. One connection for the whole app, with every query run on a background thread.
+// Results come back on the main thread through callbacks. Requests run in the order they're made,
+// so a read made after a write sees it.
+//
+// Each mode and start level has its own table, a Leaderboard, keeping its best retention scores.
+// Tables are read a page at a time, picking up after the last row of the page before, so a long
+// table never has to be held in memory. The first page and the score to beat are kept in memory
+// once read, since they're what every game over and every visit to the high scores asks for.
+public class ScoreRepository {
+    private static final String DATABASE_NAME = "scoresdb";
+    // 1: the bundled table, duration as "m:ss" text. 2: duration as frames, with an index for the ranking.
+    // 3: a table for each mode and start level.
+    private static final int DATABASE_VERSION = 3;
+    // How many scores each table keeps unless the settings say otherwise
+    public static final int DEFAULT_RETENTION = 20;
+    public static final int PAGE_SIZE = 20;
+    private static final String BOARD = "max_level = ? AND start_level = ?";
+    // id last so ties always come out in the same order, which paging relies on
+    private static final String RANKING = "score DESC, frames ASC, id ASC";
+    private static final String COLUMNS = "id, name, score, frames, grade";
+
+    private static ScoreRepository instance;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final Context context;
+    private final DBHelper dbHelper;
+    private final ExecutorService executor;
+    private final Handler mainThread;
+    // What's been read, by table. Only changed on the executor; the lists are never changed.
+    private final ConcurrentHashMap<Leaderboard, List<Score>> firstPages;
+    private final ConcurrentHashMap<Leaderboard, Integer> scoresToBeat;
+    // Writes asked for that haven't reached the cache yet. Reads wait behind them on the executor.
+    private final AtomicInteger pendingWrites;
+
+    // Only touched on the executor
+    private SQLiteDatabase db;
+    private SQLiteStatement insertScore;
+    private SQLiteStatement pruneScores;
+    private SQLiteStatement lastKept;
+
+    private ScoreRepository(Context context)
+    {
+        this.context = context;
+        dbHelper = new DBHelper(context);
+        executor = Executors.newSingleThreadExecutor();
+        mainThread = new Handler(Looper.getMainLooper());
+        firstPages = new ConcurrentHashMap<>();
+        scoresToBeat = new ConcurrentHashMap<>();
+        pendingWrites = new AtomicInteger();
+    }
+
+    public static synchronized ScoreRepository get(Context context)
+    {
+        if(instance == null)
+            instance = new ScoreRepository(context.getApplicationContext());
+        return instance;
+    }
+
+    // Public Methods =============================================================
+    // The score a game has to beat to make it into the table. 0 while the table has room.
+    public void getScoreToBeat(final Leaderboard board, final Callback<Integer> callback)
+    {
+        Integer cached = scoresToBeat.get(board);
+        if(cached != null && pendingWrites.get() == 0)
+        {
+            post(callback, cached);
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                Integer score = scoresToBeat.get(board);
+                if(score == null)
+                {
+                    score = readScoreToBeat(board);
+                    scoresToBeat.put(board, score);
+                }
+                post(callback, score);
+            }
+        });
+    }
+
+    // A page of the table, best first, starting just below after, or at the top if after is null.
+    // A page shorter than PAGE_SIZE is the last one.
+    public void getScores(final Leaderboard board, final Score after, final Callback<List<Score>> callback)
+    {
+        List<Score> cached = after == null ? firstPages.get(board) : null;
+        if(cached != null && pendingWrites.get() == 0)
+        {
+            post(callback, cached);
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                if(after != null)
+                {
+                    post(callback, readPage(board, after));
+                    return;
+                }
+
+                List<Score> page = firstPages.get(board);
+                if(page == null)
+                {
+                    page = readPage(board, null);
+                    firstPages.put(board, page);
+                }
+                post(callback, page);
+            }
+        });
+    }
+
+    // Every table with a score in it, by mode then start level
+    public void getLeaderboards(final Callback<List<Leaderboard>> callback)
+    {
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                List<Leaderboard> result = new ArrayList<>();
+                try {
+                    Cursor cursor = open().db.rawQuery("SELECT DISTINCT max_level, start_level FROM tblScores " +
+                            "ORDER BY max_level, start_level", null);
+                    try {
+                        while(cursor.moveToNext())
+                            result.add(new Leaderboard(cursor.getInt(0), cursor.getInt(1)));
+                    } finally {
+                        cursor.close();
+                    }
+                } catch (Exception e) {
+                    // Show whatever was read
+                }
+                post(callback, Collections.unmodifiableList(result));
+            }
+        });
+    }
+
+    // Adds the score and drops whatever fell off the bottom of its table. callback can be null.
+    public void writeScore(final Leaderboard board, final String name, final int score, final int frames,
+                           final String grade, final Callback<Boolean> callback)
+    {
+        pendingWrites.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                boolean written = false;
+                try {
+                    open();
+                    db.beginTransaction();
+                    try {
+                        insertScore.bindLong(1, board.maxLevel);
+                        insertScore.bindLong(2, board.startLevel);
+                        insertScore.bindString(3, name);
+                        insertScore.bindLong(4, score);
+                        insertScore.bindLong(5, frames);
+                        insertScore.bindString(6, grade);
+                        insertScore.executeInsert();
+                        pruneScores.bindLong(1, board.maxLevel);
+                        pruneScores.bindLong(2, board.startLevel);
+                        pruneScores.bindLong(3, getRetention());
+                        pruneScores.executeUpdateDelete();
+                        db.setTransactionSuccessful();
+                        written = true;
+                    } finally {
+                        db.endTransaction();
+                        insertScore.clearBindings();
+                        pruneScores.clearBindings();
+                    }
+                } catch (Exception e) {
+                    written = false;
+                }
+
+                // Read again next time it's asked for
+                if(written)
+                {
+                    firstPages.remove(board);
+                    scoresToBeat.remove(board);
+                }
+                pendingWrites.decrementAndGet();
+
+                if(callback != null)
+                    post(callback, written);
+            }
+        });
+    }
+
+    // Keeps the replay of a high score game next to the database so the score can be audited later
+    public void writeReplay(final int score, final Replay replay)
+    {
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                File dir = new File(context.getFilesDir(), "replays");
+                if(!dir.exists() && !dir.mkdirs())
+                    return;
+
+                File file = new File(dir, score + "_" + System.currentTimeMillis() + ".tmr");
+                try {
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                    try {
+                        replay.write(out);
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    // Losing a replay isn't worth bothering the player about
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    // How many scores each table keeps
+    public int getRetention()
+    {
+        return context.getSharedPreferences("scores", 0).getInt("retention", DEFAULT_RETENTION);
+    }
+
+    // Keeps a different number of scores from now on. Every table is cut down to it and read again.
+    public void setRetention(final int retention)
+    {
+        if(retention == getRetention())
+            return;
+        context.getSharedPreferences("scores", 0).edit().putInt("retention", retention).commit();
+
+        // Counts as a write, so nothing is answered from the cache until it's done
+        pendingWrites.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    open();
+                    List<Leaderboard> boards = new ArrayList<>();
+                    Cursor cursor = db.rawQuery("SELECT DISTINCT max_level, start_level FROM tblScores", null);
+                    try {
+                        while(cursor.moveToNext())
+                            boards.add(new Leaderboard(cursor.getInt(0), cursor.getInt(1)));
+                    } finally {
+                        cursor.close();
+                    }
+
+                    db.beginTransaction();
+                    try {
+                        for(Leaderboard board : boards)
+                        {
+                            pruneScores.bindLong(1, board.maxLevel);
+                            pruneScores.bindLong(2, board.startLevel);
+                            pruneScores.bindLong(3, retention);
+                            pruneScores.executeUpdateDelete();
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                        pruneScores.clearBindings();
+                    }
+                } catch (Exception e) {
+                    // Whatever wasn't cut goes with the next score written to that table
+                }
+
+                // A longer table has more to show, a shorter one less, so every cached one is wrong now
+                firstPages.clear();
+                scoresToBeat.clear();
+                pendingWrites.decrementAndGet();
+            }
+        });
+    }
+
+    // Private Methods ============================================================
+    // Executor only
+    private List<Score> readPage(Leaderboard board, Score after)
+    {
+        String maxLevel = Integer.toString(board.maxLevel);
+        String startLevel = Integer.toString(board.startLevel);
+        List<Score> result = new ArrayList<>(PAGE_SIZE);
+        try {
+            Cursor cursor;
+            if(after == null)
+                cursor = open().db.rawQuery("SELECT " + COLUMNS + " FROM tblScores WHERE " + BOARD +
+                        " ORDER BY " + RANKING + " LIMIT " + PAGE_SIZE, new String[] { maxLevel, startLevel });
+            else
+            {
+                // Everything that ranks below the last row seen. The index keeps this a seek, however deep the page.
+                String score = Integer.toString(after.score);
+                String frames = Integer.toString(after.frames);
+                cursor = open().db.rawQuery("SELECT " + COLUMNS + " FROM tblScores WHERE " + BOARD +
+                        " AND (score < ? OR (score = ? AND (frames > ? OR (frames = ? AND id > ?))))" +
+                        " ORDER BY " + RANKING + " LIMIT " + PAGE_SIZE,
+                        new String[] { maxLevel, startLevel, score, score, frames, frames, Long.toString(after.id) });
+            }
+            try {
+                while (cursor.moveToNext())
+                    result.add(new Score(cursor.getLong(0), cursor.getString(1), cursor.getInt(2), cursor.getInt(3),
+                            cursor.getString(4)));
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception e) {
+            // Show whatever was read
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Executor only
+    private int readScoreToBeat(Leaderboard board)
+    {
+        try {
+            open();
+            lastKept.bindLong(1, board.maxLevel);
+            lastKept.bindLong(2, board.startLevel);
+            lastKept.bindLong(3, getRetention() - 1);
+            try {
+                return (int) lastKept.simpleQueryForLong();
+            } finally {
+                lastKept.clearBindings();
+            }
+        } catch (SQLiteDoneException e) {
+            // Fewer scores than the table keeps
+            return 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    // Opens the connection and compiles the statements the first time through. Executor only.
+    private ScoreRepository open()
+    {
+        if(db == null)
+        {
+            db = dbHelper.getWritableDatabase();
+            insertScore = db.compileStatement("INSERT INTO tblScores (max_level, start_level, name, score, frames, grade) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)");
+            pruneScores = db.compileStatement("DELETE FROM tblScores WHERE id IN " +
+                    "(SELECT id FROM tblScores WHERE " + BOARD + " ORDER BY " + RANKING + " LIMIT -1 OFFSET ?)");
+            lastKept = db.compileStatement("SELECT score FROM tblScores WHERE " + BOARD +
+                    " ORDER BY " + RANKING + " LIMIT 1 OFFSET ?");
+        }
+        return this;
+    }
+
+    private <T> void post(final Callback<T> callback, final T result)
+    {
+        mainThread.post(new Runnable() {
+            @Override
+            public void run() { callback.onResult(result); }
+        });
+    }
+
+    // Inner class =================================================================
+    private static class DBHelper extends SQLiteOpenHelper {
+
+        public DBHelper(Context context) { super(context, DATABASE_NAME, null, DATABASE_VERSION); }
+
+        @Override
+        public void onCreate(SQLiteDatabase db)
+        {
+            // The bundled database comes with a version 1 table but no version number, so it lands here too
+            if(hasTable(db, "tblScores"))
+                migrateFrom1(db);
+            else
+                createTable(db, "tblScores");
+            createIndex(db);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+        {
+            // Version 1 gets copied straight into the current table; later ones are altered in place
+            if(oldVersion < 2)
+                migrateFrom1(db);
+            else if(oldVersion < 3)
+                splitLeaderboards(db);
+            createIndex(db);
+        }
+
+        private static void createTable(SQLiteDatabase db, String name)
+        {
+            db.execSQL("CREATE TABLE " + name + " (" +
+                    "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, " +
+                    "max_level INTEGER NOT NULL DEFAULT 999, " +
+                    "start_level INTEGER NOT NULL DEFAULT 0, " +
+                    "name TEXT, " +
+                    "score INTEGER NOT NULL, " +
+                    "frames INTEGER NOT NULL, " +
+                    "grade TEXT NOT NULL)");
+        }
+
+        // Covers finding a table, ranking it, and paging through it. id comes along as the rowid.
+        private static void createIndex(SQLiteDatabase db)
+        {
+            db.execSQL("CREATE INDEX IF NOT EXISTS idxScoresBoard ON tblScores " +
+                    "(max_level, start_level, score DESC, frames ASC)");
+        }
+
+        // Scores from before the split don't say what mode they were. They go with the full game,
+        // which is the only one a version 2 table could have been fair to.
+        private static void splitLeaderboards(SQLiteDatabase db)
+        {
+            db.execSQL("ALTER TABLE tblScores ADD COLUMN max_level INTEGER NOT NULL DEFAULT 999");
+            db.execSQL("ALTER TABLE tblScores ADD COLUMN start_level INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("DROP INDEX IF EXISTS idxScoresRanking");
+        }
+
+        // Version 1 kept the duration as "m:ss" text. Copies everything over with the duration in frames,
+        // into the one table the version 3 split leaves them in.
+        private static void migrateFrom1(SQLiteDatabase db)
+        {
+            createTable(db, "tblScoresNew");
+            SQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO tblScoresNew (id, name, score, frames, grade) VALUES (?, ?, ?, ?, ?)");
+
+            Cursor cursor = db.rawQuery("SELECT id, name, score, duration, grade FROM tblScores", null);
+            try {
+                while(cursor.moveToNext())
+                {
+                    insert.bindLong(1, cursor.getLong(0));
+                    if(cursor.isNull(1))
+                        insert.bindNull(2);
+                    else
+                        insert.bindString(2, cursor.getString(1));
+                    insert.bindLong(3, cursor.getInt(2));
+                    insert.bindLong(4, parseDuration(cursor.getString(3)));
+                    insert.bindString(5, cursor.getString(4));
+                    insert.executeInsert();
+                }
+            } finally {
+                cursor.close();
+                insert.close();
+            }
+
+            db.execSQL("DROP TABLE tblScores");
+            db.execSQL("ALTER TABLE tblScoresNew RENAME TO tblScores");
+        }
+
+        // "m:ss" to frames. Anything unreadable counts as no time at all.
+        static int parseDuration(String duration)
+        {
+            try {
+                int colon = duration.indexOf(':');
+                int minutes = Integer.parseInt(duration.substring(0, colon).trim());
+                int seconds = Integer.parseInt(duration.substring(colon + 1).trim());
+                return (minutes * 60 + seconds) * GameManager.FRAME_RATE;
+            } catch (RuntimeException e) {
+                return 0;
+            }
+        }
+
+        private static boolean hasTable(SQLiteDatabase db, String name)
+        {
+            Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[] { name });
+            try {
+                return cursor.moveToFirst();
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ca.alexcomeau.texmobile.game;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Keeps the game in progress on disk, so it survives the process being killed in the background.
+// Whoever owns the game only encodes it. The file is written on a background thread,
+// and if saves pile up while it's busy only the newest one gets written.
+public class Autosaver
+{
+    // Every five seconds of play
+    private static final int INTERVAL = GameManager.FRAME_RATE * 5;
+    private static final String FILE_NAME = "autosave.bin";
+    // Stands in for a save when the file should be cleared instead
+    private static final byte[] DISCARD = new byte[0];
+
+    public interface Callback {
+        // The saved game, or null if there isn't one that's intact
+        void onLoaded(GameManager game);
+    }
+
+    private final File path;
+    private final ExecutorService writer;
+    private final AtomicReference<byte[]> pending;
+    private final Runnable writeTask;
+    private boolean discarded;
+    // Only touched by the writer thread
+    private SaveFile file;
+
+    public Autosaver(Context context)
+    {
+        path = new File(context.getFilesDir(), FILE_NAME);
+        writer = Executors.newSingleThreadExecutor();
+        pending = new AtomicReference<>();
+        writeTask = new Runnable() {
+            @Override
+            public void run() { writePending(); }
+        };
+    }
+
+    // Called by the game thread after every frame
+    public void onFrame(GameManager game)
+    {
+        if(game.getGameOver() != null || game.getFrames() % INTERVAL == 0)
+            save(game);
+    }
+
+    // Has to be called from the only thread touching the game. A finished game clears the save instead.
+    public void save(GameManager game)
+    {
+        if(game.getGameOver() != null)
+        {
+            if(!discarded)
+                offer(DISCARD);
+            discarded = true;
+            return;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try {
+            game.writeState(out);
+        } catch (IOException e) {
+            return;
+        }
+        offer(out.toByteArray());
+    }
+
+    // Lets the writer thread go once it's written whatever is waiting
+    public void close()
+    {
+        writer.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    if(file != null)
+                        file.close();
+                } catch (IOException e) {
+                    // Nothing left to lose
+                }
+            }
+        });
+        writer.shutdown();
+    }
+
+    private void offer(byte[] state)
+    {
+        // Only queue the task if there wasn't one coming already, it'll pick up the newest state
+        if(pending.getAndSet(state) == null)
+            writer.execute(writeTask);
+    }
+
+    private void writePending()
+    {
+        byte[] state = pending.getAndSet(null);
+        if(state == null)
+            return;
+
+        try {
+            if(file == null)
+                file = new SaveFile(path);
+
+            if(state == DISCARD)
+                file.clear();
+            else
+                file.write(state);
+        } catch (IOException e) {
+            // Losing an autosave isn't worth bothering the player about
+        }
+    }
+
+    // Whether there's a game to carry on. Only checks the file, so it's quick enough for the UI thread.
+    public static boolean hasSave(Context context) { return SaveFile.hasSave(new File(context.getFilesDir(), FILE_NAME)); }
+
+    // Reads the saved game on the writer thread, ahead of any saves, and hands it to the UI thread
+    public void load(final Callback callback)
+    {
+        final Handler mainThread = new Handler(Looper.getMainLooper());
+        writer.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                final GameManager game = read();
+                mainThread.post(new Runnable() {
+                    @Override
+                    public void run() { callback.onLoaded(game); }
+                });
+            }
+        });
+    }
+
+    // Only called by the writer thread
+    private GameManager read()
+    {
+        if(!path.exists())
+            return null;
+
+        try {
+            if(file == null)
+                file = new SaveFile(path);
+            byte[] state = file.read();
+            return state == null ? null : GameManager.readState(new ByteArrayInputStream(state));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package ca.alexcomeau.texmobile.game;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.NinePatchDrawable;
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+// Draws the board with OpenGL ES 2.0. Every cell is a textured quad out of one atlas texture,
+// so the whole board goes to the GPU in a single draw call.
+public class BoardRenderer implements GLSurfaceView.Renderer
+{
+    // Told about every snapshot drawn, on the GL thread
+    public interface Callback
+    {
+        void onFrame(FrameSnapshot snapshot);
+    }
+
+    // The whole stack plus the falling piece
+    private static final int MAX_QUADS = Board.WIDTH * Board.HEIGHT + 4;
+    private static final int VERTICES_PER_QUAD = 6;
+    // x, y, u, v
+    private static final int FLOATS_PER_VERTEX = 4;
+    private static final int STRIDE = FLOATS_PER_VERTEX * 4;
+    // Size of one tile in the atlas texture. The texture is a power of two wide so older GPUs take it.
+    private static final int TILE_SIZE = 64;
+    private static final int ATLAS_WIDTH = 512;
+    // Tiles sit side by side and get filtered, so their edges are sampled half a texel in
+    // to keep the neighbouring tile from bleeding into them
+    private static final float HALF_TEXEL = 0.5f / ATLAS_WIDTH;
+    private static final int COLUMNS = 10;
+    private static final int ROWS = 20;
+
+    private static final String VERTEX_SHADER =
+            "attribute vec2 aPosition;\n" +
+            "attribute vec2 aTexCoord;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    vTexCoord = aTexCoord;\n" +
+            "    gl_Position = vec4(aPosition, 0.0, 1.0);\n" +
+            "}\n";
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D uAtlas;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(uAtlas, vTexCoord);\n" +
+            "}\n";
+
+    private final NinePatchDrawable[] tiles;
+    private final float[] vertices;
+    private final FloatBuffer vertexBuffer;
+    private int program;
+    private int positionHandle;
+    private int texCoordHandle;
+    private int atlasHandle;
+    private int texture;
+    // Size of a cell in normalized device coordinates
+    private float cellWidth;
+    private float cellHeight;
+    private final Callback callback;
+    private volatile SnapshotBuffer snapshots;
+
+    public BoardRenderer(NinePatchDrawable[] tiles, Callback callback)
+    {
+        this.tiles = tiles;
+        this.callback = callback;
+        vertices = new float[MAX_QUADS * VERTICES_PER_QUAD * FLOATS_PER_VERTEX];
+        vertexBuffer = ByteBuffer.allocateDirect(vertices.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+
+    // The GL thread is the only one that reads from these
+    public void setSnapshots(SnapshotBuffer snapshots) { this.snapshots = snapshots; }
+
+    @Override
+    public void onSurfaceCreated(GL10 unused, EGLConfig config)
+    {
+        // Everything from the old context is gone, so build it all again
+        program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, compile(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(program, compile(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(program);
+
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if(status[0] == 0)
+            throw new RuntimeException("Could not link the board shaders: " + GLES20.glGetProgramInfoLog(program));
+
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        atlasHandle = GLES20.glGetUniformLocation(program, "uAtlas");
+        texture = buildAtlas();
+
+        GLES20.glClearColor(0f, 0f, 0f, 1f);
+        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 unused, int width, int height)
+    {
+        GLES20.glViewport(0, 0, width, height);
+
+        // Cells are square, sized by the width like the canvas renderer
+        int cell = width / COLUMNS;
+        cellWidth = 2f * cell / width;
+        cellHeight = height == 0 ? 2f / ROWS : 2f * cell / height;
+    }
+
+    @Override
+    public void onDrawFrame(GL10 unused)
+    {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        SnapshotBuffer snapshots = this.snapshots;
+        if(snapshots == null)
+            return;
+
+        FrameSnapshot game = snapshots.acquire();
+        callback.onFrame(game);
+
+        int quads = 0;
+
+        // Top row is mostly off the screen, the one above it isn't drawn at all
+        for(int y = 0; y <= ROWS; y++)
+            for(int x = 0; x < COLUMNS; x++)
+            {
+                int cell = game.getCell(x, y);
+                if(cell != 0)
+                    quads = putQuad(quads, cell - 1, x, y);
+            }
+
+        Block.Shape shape = game.getPieceShape();
+        if(shape != null)
+        {
+            int rotation = game.getPieceRotation();
+            for(Cell c : shape.getRotations()[rotation])
+                quads = putQuad(quads, shape.ordinal(), c.x + game.getPieceX(), c.y + game.getPieceY());
+        }
+
+        if(quads == 0)
+            return;
+
+        int floats = quads * VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+        vertexBuffer.clear();
+        vertexBuffer.put(vertices, 0, floats);
+
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glUniform1i(atlasHandle, 0);
+
+        vertexBuffer.position(0);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, STRIDE, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        vertexBuffer.position(2);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, STRIDE, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, quads * VERTICES_PER_QUAD);
+
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+    }
+
+    // Adds the two triangles for the cell at (x, y), textured with the given tile. Returns the new quad count.
+    private int putQuad(int quad, int tile, int x, int y)
+    {
+        if(quad >= MAX_QUADS)
+            return quad;
+
+        // Row 0 is the bottom one, but the board is laid out from the top of the view down
+        float left = -1f + x * cellWidth;
+        float right = left + cellWidth;
+        float top = 1f - (ROWS - 1 - y) * cellHeight;
+        float bottom = top - cellHeight;
+
+        float u0 = (float) (tile * TILE_SIZE) / ATLAS_WIDTH + HALF_TEXEL;
+        float u1 = (float) (tile * TILE_SIZE + TILE_SIZE) / ATLAS_WIDTH - HALF_TEXEL;
+
+        int i = quad * VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+        i = putVertex(i, left, top, u0, 0f);
+        i = putVertex(i, left, bottom, u0, 1f);
+        i = putVertex(i, right, top, u1, 0f);
+        i = putVertex(i, right, top, u1, 0f);
+        i = putVertex(i, left, bottom, u0, 1f);
+        putVertex(i, right, bottom, u1, 1f);
+
+        return quad + 1;
+    }
+
+    private int putVertex(int i, float x, float y, float u, float v)
+    {
+        vertices[i] = x;
+        vertices[i + 1] = y;
+        vertices[i + 2] = u;
+        vertices[i + 3] = v;
+        return i + FLOATS_PER_VERTEX;
+    }
+
+    // Draws every nine-patch once into a bitmap and hands it to the GPU
+    private int buildAtlas()
+    {
+        Bitmap atlas = Bitmap.createBitmap(ATLAS_WIDTH, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        canvas.drawColor(Color.BLACK);
+
+        for(int i = 0; i < tiles.length; i++)
+        {
+            tiles[i].setBounds(i * TILE_SIZE, 0, i * TILE_SIZE + TILE_SIZE, TILE_SIZE);
+            tiles[i].draw(canvas);
+        }
+
+        int[] handle = new int[1];
+        GLES20.glGenTextures(1, handle, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, handle[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, atlas, 0);
+        atlas.recycle();
+
+        return handle[0];
+    }
+
+    private static int compile(int type, String source)
+    {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if(status[0] == 0)
+        {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new RuntimeException("Could not compile a board shader: " + log);
+        }
+        return shader;
+    }
+}
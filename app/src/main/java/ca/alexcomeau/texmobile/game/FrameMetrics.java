@@ -0,0 +1,166 @@
+package ca.alexcomeau.texmobile.game;
+
+import android.os.Debug;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timing of the game loop, for finding jank on slow devices.
+ *
+ * Only the game thread writes. Each loop is stored in ring buffers, and the count is published afterwards,
+ * so readers on other threads never need a lock. A reader might see a slot that's being overwritten,
+ * which is fine for statistics.
+ */
+public class FrameMetrics {
+    // Must be a power of two
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    // Histogram bucket upper bounds in milliseconds. Anything over the last goes in an extra bucket.
+    private static final int[] BUCKETS = {1, 2, 4, 8, 16, 33, 66};
+
+    private final long[] updateNanos = new long[CAPACITY];
+    private final long[] renderNanos = new long[CAPACITY];
+    private final int[] updates = new int[CAPACITY];
+    private final int[] gcs = new int[CAPACITY];
+    private final int[] allocations = new int[CAPACITY];
+    private final AtomicInteger written = new AtomicInteger();
+
+    // Running totals, since the rings only hold the latest loops
+    private volatile long totalSkipped;
+    private volatile long totalBehind;
+    private volatile long totalGcs;
+
+    private int lastGcCount;
+    private int lastAllocCount;
+
+    // Starts counting allocations and collections. Call from the game thread.
+    @SuppressWarnings("deprecation")
+    public void start()
+    {
+        Debug.startAllocCounting();
+        lastGcCount = Debug.getGlobalGcInvocationCount();
+        lastAllocCount = Debug.getThreadAllocCount();
+    }
+
+    @SuppressWarnings("deprecation")
+    public void stop() { Debug.stopAllocCounting(); }
+
+    // Records one pass of the game loop. updateCount is how many updates ran, behind is whether time got dropped.
+    @SuppressWarnings("deprecation")
+    public void record(long updateTime, long renderTime, int updateCount, boolean behind)
+    {
+        int gcCount = Debug.getGlobalGcInvocationCount();
+        int allocCount = Debug.getThreadAllocCount();
+
+        int i = written.get() & MASK;
+        updateNanos[i] = updateTime;
+        renderNanos[i] = renderTime;
+        updates[i] = updateCount;
+        gcs[i] = gcCount - lastGcCount;
+        allocations[i] = allocCount - lastAllocCount;
+
+        if(updateCount > 1)
+            totalSkipped += updateCount - 1;
+        if(behind)
+            totalBehind++;
+        totalGcs += gcCount - lastGcCount;
+
+        lastGcCount = gcCount;
+        lastAllocCount = allocCount;
+
+        // Publish the slot
+        written.lazySet(written.get() + 1);
+    }
+
+    // Writes a short summary of the recent loops for the on-screen overlay, without allocating
+    public void summarize(StringBuilder out)
+    {
+        int count = Math.min(written.get(), CAPACITY);
+        long update = 0, render = 0, worst = 0;
+        int rendered = 0, allocs = 0;
+
+        for(int i = 0; i < count; i++)
+        {
+            update += updateNanos[i];
+            if(renderNanos[i] > 0)
+            {
+                render += renderNanos[i];
+                rendered++;
+            }
+            worst = Math.max(worst, updateNanos[i] + renderNanos[i]);
+            allocs += allocations[i];
+        }
+
+        out.setLength(0);
+        out.append("upd ").append(count == 0 ? 0 : update / count / 1000).append("us");
+        out.append(" rnd ").append(rendered == 0 ? 0 : render / rendered / 1000).append("us");
+        out.append(" max ").append(worst / 1000000).append("ms");
+        out.append(" skip ").append(totalSkipped);
+        out.append(" gc ").append(totalGcs);
+        out.append(" alloc ").append(allocs);
+    }
+
+    // Writes histograms of the recent loops to a file
+    public void dump(File file) throws IOException
+    {
+        int count = Math.min(written.get(), CAPACITY);
+        int[] updateHistogram = new int[BUCKETS.length + 1];
+        int[] renderHistogram = new int[BUCKETS.length + 1];
+        int[] catchUpHistogram = new int[8];
+        // Whole loop times, of just the loops a collection ran in, to tell whether it's the GC that's janking
+        int[] gcHistogram = new int[BUCKETS.length + 1];
+        int rendered = 0, withGc = 0;
+
+        for(int i = 0; i < count; i++)
+        {
+            updateHistogram[bucket(updateNanos[i])]++;
+            if(renderNanos[i] > 0)
+            {
+                renderHistogram[bucket(renderNanos[i])]++;
+                rendered++;
+            }
+            catchUpHistogram[Math.min(updates[i], catchUpHistogram.length - 1)]++;
+            if(gcs[i] > 0)
+            {
+                gcHistogram[bucket(updateNanos[i] + renderNanos[i])]++;
+                withGc++;
+            }
+        }
+
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("loops " + count + ", rendered " + rendered + ", with a gc " + withGc);
+            out.println("skipped frames " + totalSkipped + ", fell behind " + totalBehind + ", gcs " + totalGcs);
+            printHistogram(out, "update ms", updateHistogram);
+            printHistogram(out, "render ms", renderHistogram);
+            printHistogram(out, "loop ms with a gc", gcHistogram);
+
+            out.println("updates per loop");
+            for(int i = 0; i < catchUpHistogram.length; i++)
+                out.println("  " + i + (i == catchUpHistogram.length - 1 ? "+" : "") + "\t" + catchUpHistogram[i]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int bucket(long nanos)
+    {
+        long millis = nanos / 1000000;
+        for(int i = 0; i < BUCKETS.length; i++)
+            if(millis < BUCKETS[i])
+                return i;
+        return BUCKETS.length;
+    }
+
+    private static void printHistogram(PrintWriter out, String title, int[] histogram)
+    {
+        out.println(title);
+        for(int i = 0; i < BUCKETS.length; i++)
+            out.println("  <" + BUCKETS[i] + "\t" + histogram[i]);
+        out.println("  >=" + BUCKETS[BUCKETS.length - 1] + "\t" + histogram[BUCKETS.length]);
+    }
+}
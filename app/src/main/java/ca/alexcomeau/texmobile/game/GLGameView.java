@@ -0,0 +1,123 @@
+package ca.alexcomeau.texmobile.game;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+
+import ca.alexcomeau.texmobile.activities.GameActivity;
+
+// Same game as GameView, but drawn by the GPU. Only made when the device has OpenGL ES 2.0.
+public class GLGameView extends GLSurfaceView implements GameThread.Callback, BoardRenderer.Callback, GameSurface
+{
+    private volatile GameThread thread;
+    private GameManager game;
+    private GameActivity activity;
+    private BoardRenderer renderer;
+    // Set last in setupGame, so once the game thread sees it the rest is there too
+    private volatile boolean gameStarted;
+    private SnapshotBuffer snapshots;
+    private SnapshotWatcher watcher;
+    private FrameMetrics metrics;
+
+    public GLGameView(Context ctx)
+    {
+        super(ctx);
+        setEGLContextClientVersion(2);
+        setPreserveEGLContextOnPause(true);
+        renderer = new BoardRenderer(GameView.loadTiles(ctx), this);
+        setRenderer(renderer);
+        // Frames are only drawn when the game thread asks for one
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+        setFocusable(true);
+        gameStarted = false;
+    }
+
+    @Override
+    public void onMeasure(int widthSpec, int heightSpec)
+    {
+        int width = GameView.boardWidth(widthSpec, heightSpec);
+        this.setMeasuredDimension(width, GameView.boardHeight(width, heightSpec));
+    }
+
+    @Override
+    public void setupGame(GameManager game, GameActivity activity)
+    {
+        this.game = game;
+        this.activity = activity;
+        watcher = new SnapshotWatcher(activity);
+        snapshots = new SnapshotBuffer();
+        game.setSnapshots(snapshots);
+        renderer.setSnapshots(snapshots);
+        gameStarted = true;
+    }
+
+    @Override
+    public void update()
+    {
+        // A finished game stays the way it ended, even if the thread is started again
+        if(gameStarted && game.getGameOver() == null)
+        {
+            game.advanceFrame(activity.getInput());
+            activity.getAutosaver().onFrame(game);
+        }
+    }
+
+    // The GL thread picks up the newest snapshot when it gets to it
+    @Override
+    public void render() { requestRender(); }
+
+    @Override
+    public void onFrame(FrameSnapshot snapshot)
+    {
+        watcher.check(snapshot);
+
+        GameThread thread = this.thread;
+        if(snapshot.getGameOver() != null && thread != null && thread.isRunning())
+        {
+            thread.setRunning(false);
+            activity.showGameOver();
+        }
+    }
+
+    // There's no overlay with GL, the timings only go to the dump
+    @Override
+    public void setMetrics(FrameMetrics metrics, boolean showOverlay) { this.metrics = metrics; }
+
+    @Override
+    public FrameMetrics getMetrics() { return metrics; }
+    @Override
+    public GameManager getGame() { return game; }
+    @Override
+    public boolean getRedraw() { return gameStarted && snapshots.isFresh(); }
+
+    @Override
+    public void start()
+    {
+        onResume();
+        if(thread == null)
+        {
+            thread = new GameThread(this);
+            thread.setRunning(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        if(thread != null)
+        {
+            thread.setRunning(false);
+            boolean retry = true;
+            while(retry)
+            {
+                try
+                {
+                    thread.join();
+                    retry = false;
+                } catch (InterruptedException e) {}
+            }
+            thread = null;
+        }
+        onPause();
+    }
+}
@@ -0,0 +1,15 @@
+package ca.alexcomeau.texmobile.game;
+
+import ca.alexcomeau.texmobile.activities.GameActivity;
+
+// A view that can show a game, whichever way it draws it
+public interface GameSurface
+{
+    void setupGame(GameManager game, GameActivity activity);
+    GameManager getGame();
+    // Turns on frame timing, with an overlay if showOverlay and the view can draw one
+    void setMetrics(FrameMetrics metrics, boolean showOverlay);
+    FrameMetrics getMetrics();
+    void start();
+    void stop();
+}
@@ -1,84 +1,121 @@
 package ca.alexcomeau.texmobile.game;
 
-import android.graphics.Canvas;
-import android.view.SurfaceHolder;
-
 public class GameThread extends Thread
 {
-    private final static int MAX_FPS = 30;
+    // Whatever the thread is driving. It doesn't care how the frames end up on screen.
+    public interface Callback
+    {
+        // Advance the game one frame
+        void update();
+        // Whether there's anything new to show
+        boolean getRedraw();
+        // Put the current state on screen. May block until the display is ready for it.
+        void render();
+        // Where to record frame timings, or null to skip them
+        FrameMetrics getMetrics();
+    }
+
+    // A render rate of 0 draws whenever there's something new, paced by the display
+    public final static int RENDER_WHEN_READY = 0;
     private final static int MAX_FRAME_SKIPS = 5;
-    private final static int FRAME_PERIOD = 1000 / MAX_FPS;
-    private SurfaceHolder surfaceHolder;
-    private GameView gameView;
-    private boolean running;
+    private final static long NANOS_PER_SECOND = 1000000000L;
+    private final static long NANOS_PER_MILLI = 1000000L;
 
-    public GameThread(GameView gameView)
+    private final long updatePeriod;
+    private final long renderPeriod;
+    private Callback callback;
+    private volatile boolean running;
+
+    public GameThread(Callback callback)
+    {
+        this(callback, GameManager.FRAME_RATE, RENDER_WHEN_READY);
+    }
+
+    // The game logic always runs at exactly updateRate frames a second, no matter how long rendering takes.
+    // The rules count frames, so changing the update rate changes the speed of the game.
+    public GameThread(Callback callback, int updateRate, int renderRate)
     {
         super();
-        this.surfaceHolder = gameView.getHolder();
-        this.gameView = gameView;
+        this.callback = callback;
+        updatePeriod = NANOS_PER_SECOND / updateRate;
+        renderPeriod = renderRate == RENDER_WHEN_READY ? 0 : NANOS_PER_SECOND / renderRate;
     }
 
     public void setRunning(boolean running) { this.running = running; }
+    public boolean isRunning() { return running; }
 
     public void run()
     {
-        Canvas canvas;
+        FrameMetrics metrics = callback.getMetrics();
+        if(metrics != null)
+            metrics.start();
+
+        try
+        {
+            loop(metrics);
+        }
+        finally
+        {
+            if(metrics != null)
+                metrics.stop();
+        }
+    }
 
-        long beginTime;
-        long timeDiff;
-        int sleepTime = 0;
-        int framesSkipped;
+    private void loop(FrameMetrics metrics)
+    {
+        long previous = System.nanoTime();
+        long nextRender = previous;
+        // Time that has passed but hasn't been simulated yet
+        long accumulator = 0;
 
         while(running)
         {
-            canvas = null;
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
 
-            try
+            // Do the game maths, once for every update period that has passed
+            int updates = 0;
+            boolean behind = false;
+            while(accumulator >= updatePeriod && updates <= MAX_FRAME_SKIPS)
             {
-                beginTime = System.currentTimeMillis();
-                framesSkipped = 0;
+                callback.update();
+                accumulator -= updatePeriod;
+                updates++;
+            }
 
-                // Do the game maths
-                gameView.update();
+            // If we're too far behind to catch up, let the game slow down instead of skipping ahead
+            if(accumulator >= updatePeriod)
+            {
+                accumulator %= updatePeriod;
+                behind = true;
+            }
 
-                // Do the game arts if needed
-                if(gameView.getRedraw()) canvas = surfaceHolder.lockCanvas();
-                synchronized(surfaceHolder)
-                {
-                    if(canvas != null) gameView.render(canvas);
-
-                    // How long did that take?
-                    timeDiff = System.currentTimeMillis() - beginTime;
-
-                    // How long do we need to sleep?
-                    sleepTime = (int)(FRAME_PERIOD - timeDiff);
-
-                    // We do need to sleep, right?
-                    if(sleepTime > 0)
-                    {
-                        try
-                        {
-                            Thread.sleep(sleepTime);
-                        } catch (InterruptedException e) { return; }
-                    }
-
-                    while(sleepTime < 0 && framesSkipped < MAX_FRAME_SKIPS)
-                    {
-                        // Do you like ketchup?
-                        this.gameView.update();
-
-                        // Did we catch up?
-                        sleepTime += FRAME_PERIOD;
-                        framesSkipped++;
-                    }
-                }
+            long updated = System.nanoTime();
+
+            // Do the game arts if needed
+            if(callback.getRedraw() && now >= nextRender)
+            {
+                // Blocks until the display can take another frame
+                callback.render();
+                nextRender = now + renderPeriod;
+            }
+
+            if(metrics != null)
+            {
+                long rendered = System.nanoTime();
+                metrics.record(updated - now, rendered - updated, updates, behind);
             }
-            finally
+
+            // Sleep until the next update is due, without holding on to the display
+            long sleepTime = updatePeriod - accumulator - (System.nanoTime() - previous);
+            if(sleepTime > 0)
             {
-                if(canvas != null)
-                    surfaceHolder.unlockCanvasAndPost(canvas);
+                try
+                {
+                    Thread.sleep(sleepTime / NANOS_PER_MILLI, (int) (sleepTime % NANOS_PER_MILLI));
+                } catch (InterruptedException e) { return; }
             }
         }
     }
-}
\ No newline at end of file
+}
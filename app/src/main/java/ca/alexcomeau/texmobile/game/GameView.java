@@ -5,28 +5,54 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Point;
+import android.graphics.Rect;
 import android.graphics.drawable.NinePatchDrawable;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-import java.util.Hashtable;
+import java.util.Arrays;
 
 import ca.alexcomeau.texmobile.R;
 import ca.alexcomeau.texmobile.activities.GameActivity;
 
-public class GameView extends SurfaceView implements SurfaceHolder.Callback
+public class GameView extends SurfaceView implements SurfaceHolder.Callback, GameThread.Callback, GameSurface
 {
+    // Rows 0 to 20. Row 20 is mostly off the top of the screen.
+    private static final int VISIBLE_ROWS = (1 << 21) - 1;
+    private static final Block.Shape[] SHAPES = Block.Shape.values();
     private GameThread thread;
     private GameManager game;
     private Context context;
     private GameActivity activity;
     private int rectWidth;
-    private boolean gameStarted;
-    private Hashtable<Block.Shape, NinePatchDrawable> htShapes;
+    // A resumed game can be set up while the thread is already going, so this is what hands it over
+    private volatile boolean gameStarted;
+    // Tile drawables, indexed by shape ordinal
+    private NinePatchDrawable[] tiles;
+    // Every tile drawn once at the current cell size, side by side in shape order
+    private Bitmap tileAtlas;
+    // Where each shape's tile is in the atlas
+    private Rect[] tileRects;
+    private Rect cellRect;
     private Bitmap stackState;
+    private Canvas stackCanvas;
+    private Paint bitmapPaint;
+    private Paint textPaint;
+    private Rect dirtyRect;
+    private Rect clipRect;
+    private SnapshotBuffer snapshots;
+    private SnapshotWatcher watcher;
+    // What the stack bitmap shows, laid out like the snapshot cells
+    private byte[] drawnCells;
+    // Rows the piece covered in the last frame drawn
+    private int drawnPieceRows;
+    // Set when the whole surface has to be drawn again, like after it's recreated
+    private volatile boolean fullRedraw;
+    private FrameMetrics metrics;
+    private StringBuilder metricsText;
+    private Paint metricsPaint;
 
     public GameView(Context ctx, AttributeSet attrs)
     {
@@ -37,17 +63,30 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback
         gameStarted = false;
         // Initialize
         stackState = Bitmap.createBitmap(1,1, Bitmap.Config.RGB_565);
+        stackCanvas = new Canvas(stackState);
+        bitmapPaint = new Paint();
+        textPaint = new Paint();
+        dirtyRect = new Rect();
+        clipRect = new Rect();
+        cellRect = new Rect();
+        drawnCells = new byte[Board.WIDTH * Board.HEIGHT];
     }
 
     @Override
     public void onMeasure(int widthSpec, int heightSpec)
     {
         // This override is so the view will fill all available space, while also maintaining its aspect ratio.
-        int heightMode = MeasureSpec.getMode(heightSpec);
+        int width = boardWidth(widthSpec, heightSpec);
+        this.setMeasuredDimension(width, boardHeight(width, heightSpec));
+    }
+
+    // Shared with the GL view so both backends come out the same size
+    static int boardWidth(int widthSpec, int heightSpec)
+    {
         int widthMode = MeasureSpec.getMode(widthSpec);
         int widthSize = MeasureSpec.getSize(widthSpec);
         int heightSize = MeasureSpec.getSize(heightSpec);
-        int width, height;
+        int width;
 
         if (widthMode == MeasureSpec.EXACTLY)
             width = widthSize;
@@ -60,6 +99,15 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback
         else
             width = Integer.MAX_VALUE;
 
+        return width;
+    }
+
+    static int boardHeight(int width, int heightSpec)
+    {
+        int heightMode = MeasureSpec.getMode(heightSpec);
+        int heightSize = MeasureSpec.getSize(heightSpec);
+        int height;
+
         if (heightMode == MeasureSpec.EXACTLY)
             height = heightSize;
         else if (heightMode == MeasureSpec.AT_MOST)
@@ -71,39 +119,51 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback
         else
             height = Integer.MAX_VALUE;
 
-        this.setMeasuredDimension(width, height);
+        return height;
     }
 
-    public void setupGame(int start, int end, GameActivity activity)
+    // Tile drawables, indexed by shape ordinal
+    static NinePatchDrawable[] loadTiles(Context context)
     {
-        game = new GameManager();
-        game.start(start, end);
+        NinePatchDrawable[] tiles = new NinePatchDrawable[Block.Shape.values().length];
 
-        setupGame(game, activity);
+        // Get all the drawables and associate them with the shapes
+        tiles[Block.Shape.I.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_red);
+        tiles[Block.Shape.J.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_blue);
+        tiles[Block.Shape.L.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_orange);
+        tiles[Block.Shape.O.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_yellow);
+        tiles[Block.Shape.S.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_magenta);
+        tiles[Block.Shape.T.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_cyan);
+        tiles[Block.Shape.Z.ordinal()] = (NinePatchDrawable) ContextCompat.getDrawable(context, R.drawable.block_green);
+
+        return tiles;
     }
 
+    @Override
     public void setupGame(GameManager game, GameActivity activity)
     {
         this.game = game;
         this.activity = activity;
 
-        gameStarted = true;
+        tiles = loadTiles(activity.getBaseContext());
 
-        htShapes = new Hashtable<>();
+        tileRects = new Rect[tiles.length];
+        for(int i = 0; i < tiles.length; i++)
+            tileRects[i] = new Rect();
 
-        // Get all the drawables and associate them with the shapes
-        htShapes.put(Block.Shape.I, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_red));
-        htShapes.put(Block.Shape.J, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_blue));
-        htShapes.put(Block.Shape.L, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_orange));
-        htShapes.put(Block.Shape.O, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_yellow));
-        htShapes.put(Block.Shape.S, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_magenta));
-        htShapes.put(Block.Shape.T, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_cyan));
-        htShapes.put(Block.Shape.Z, (NinePatchDrawable) ContextCompat.getDrawable(activity.getBaseContext(), R.drawable.block_green));
+        watcher = new SnapshotWatcher(activity);
+        snapshots = new SnapshotBuffer();
+        game.setSnapshots(snapshots);
+        fullRedraw = true;
+        gameStarted = true;
     }
 
     @Override
     public void surfaceCreated(SurfaceHolder holder)
     {
+        // A new surface starts out blank
+        fullRedraw = true;
+
         // Set up the thread when the surface is ready for it, if it hasn't been already
         if(thread == null)
         {
@@ -117,161 +177,246 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) { }
 
     @Override
-    public void surfaceDestroyed(SurfaceHolder holder)
-    {
-        boolean retry = true;
-        while(retry)
-        {
-            try
-            {
-                thread.join();
-                retry = false;
-            } catch (InterruptedException e) {}
-        }
-        thread = null;
-    }
+    public void surfaceDestroyed(SurfaceHolder holder) { stop(); }
 
     @Override
     protected void onDraw(Canvas canvas) { }
 
+    @Override
     public void update()
     {
-        if(gameStarted)
+        // A finished game stays the way it ended, even if the thread is started again
+        if(gameStarted && game.getGameOver() == null)
+        {
             game.advanceFrame(activity.getInput());
+            activity.getAutosaver().onFrame(game);
+        }
     }
 
-    public void render(Canvas canvas)
+    // Draws the newest snapshot. Only reads the snapshot, never the game, so the game can keep going meanwhile.
+    @Override
+    public void render()
     {
-        if(gameStarted)
+        if(!gameStarted || getWidth() == 0)
+            return;
+
+        FrameSnapshot snapshot = snapshots.acquire();
+        watcher.check(snapshot);
+
+        boolean full = fullRedraw;
+        fullRedraw = false;
+
+        // If this is the first run, or the orientation changed, remake the bitmaps
+        if(stackState.getWidth() != getWidth())
+        {
+            rectWidth = getWidth() / 10;
+            buildAtlas();
+            stackState = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.RGB_565);
+            stackCanvas = new Canvas(stackState);
+            full = true;
+        }
+
+        // Nothing matches the blank bitmap, so every row gets drawn
+        if(full)
+            Arrays.fill(drawnCells, (byte) -1);
+
+        // Draw the changed rows of the stack onto a bitmap so we can avoid drawing it over and over
+        int stackRows = snapshot.syncStack(drawnCells) & VISIBLE_ROWS;
+        for(int i = 0; i <= 20; i++)
+            if((stackRows & (1 << i)) != 0)
+                drawRow(snapshot, i);
+
+        // Where the piece was and where it is now
+        int pieceRows = snapshot.getPieceRows();
+        int rows = (stackRows | pieceRows | drawnPieceRows) & VISIBLE_ROWS;
+        boolean gameOver = snapshot.getGameOver() != null;
+
+        // Nothing to show, leave the surface alone
+        if(rows == 0 && !full && !gameOver && metricsText == null)
+            return;
+
+        // Only the changed part gets drawn, the surface keeps the rest from the last frame
+        SurfaceHolder holder = getHolder();
+        Rect dirty = full || gameOver ? null : getDirtyRect(rows);
+        Canvas canvas = dirty == null ? holder.lockCanvas() : holder.lockCanvas(dirty);
+        if(canvas == null)
+        {
+            // Surface is gone. Whatever comes next starts from nothing.
+            fullRedraw = true;
+            return;
+        }
+
+        try
         {
-            if(game.getSoundEffectToPlay() > -1)
+            synchronized(holder)
             {
-                activity.playSound(game.getSoundEffectToPlay());
-                game.clearSoundEffect();
+                drawFrame(canvas, snapshot);
             }
-            if(getRedraw())
-            {
-                // Set up the rectangle width based on the canvas size
-                rectWidth = canvas.getWidth() / 10;
+        }
+        finally
+        {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        drawnPieceRows = pieceRows;
 
-                boolean sizeChanged = false;
+        if(gameOver)
+            thread.setRunning(false);
+    }
 
-                // If this is the first run, or the orientation changed, remake the bitmap
-                if(stackState.getWidth() != canvas.getWidth())
-                {
-                    stackState = Bitmap.createBitmap(canvas.getWidth(), canvas.getHeight(), Bitmap.Config.RGB_565);
-                    sizeChanged = true;
-                }
+    // The part of the surface covering the given rows
+    private Rect getDirtyRect(int rows)
+    {
+        // Nothing on the board changed, so any small area will do
+        if(rows == 0)
+            rows = 1;
 
-                NinePatchDrawable tile;
-                Block lastBlock = game.getLastBlock();
+        // Rows are drawn from the bottom up, row 0 being the bottom one
+        int lowest = Integer.numberOfTrailingZeros(rows);
+        int highest = 31 - Integer.numberOfLeadingZeros(rows);
+        dirtyRect.set(0, Math.max(0, (19 - highest) * rectWidth), getWidth(), (20 - lowest) * rectWidth);
 
-                if(game.getStackRedraw() || sizeChanged)
-                {
-                    // Draw the stack onto a bitmap so we can avoid drawing it over and over
-                    Canvas stack = new Canvas(stackState);
-                    stack.drawColor(Color.BLACK);
-
-                    Block.Shape[][] colors = game.getStack();
-
-                    // Paint the stack onto the canvas (and therefore onto the bitmap. Top two rows aren't drawn.
-                    for(int i = 0; i <= 20; i++)
-                        for(int j = 0; j < 10; j++)
-                            // The canvas is already black so we don't have to draw that.
-                            if(colors[i][j] != null)
-                            {
-                                tile = htShapes.get(colors[i][j]);
-                                tile.setBounds(j * rectWidth,
-                                        (20 - i) * rectWidth - rectWidth,
-                                        j * rectWidth + rectWidth,
-                                        (20 - i) * rectWidth);
-                                tile.draw(stack);
-                            }
-                    game.clearLastBlock();
-                }
-                else if(lastBlock != null)
-                {
-                    // If a block was locked but no lines cleared, just draw that block onto the stack image
-                    // No need to redraw the whole thing since the old tiles didn't change.
-                    Canvas stack = new Canvas(stackState);
-                    drawBlock(lastBlock, stack);
-                    game.clearLastBlock();
-                }
-
-                canvas.drawBitmap(stackState, 0, 0, new Paint());
-
-                // Paint the active piece onto the canvas
-                Block currentBlock = game.getCurrentBlock();
-                if(currentBlock != null)
-                    drawBlock(currentBlock, canvas);
-
-                // Update the views and play sounds
-                activity.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run()
-                    {
-                        activity.setScore(game.getScore());
-                        activity.setLevel(game.getLevel(), game.getMaxLevel());
-                        activity.setNextPiece(game.getNextBlock().getShape());
-                    }
-                });
-
-                // Tell the game we drew it
-                game.clearRedraw();
-            }
+        // The overlay changes every frame
+        if(metricsText != null)
+            dirtyRect.top = 0;
 
-            if(game.getGameOver() != null)
-            {
-                // Stop the thread
-                thread.setRunning(false);
-                // Draw a message
-                Paint paint = new Paint();
-                paint.setTextSize(rectWidth);
-
-                // shadow
-                paint.setColor(Color.DKGRAY);
-                canvas.drawText(context.getString(R.string.gameover), rectWidth + 2, rectWidth + 2, paint);
-                canvas.drawText(context.getString(R.string.pressAny), rectWidth + 2, rectWidth * 3 + 2, paint);
-
-                paint.setColor(Color.WHITE);
-                canvas.drawText(context.getString(R.string.gameover), rectWidth, rectWidth, paint);
-                canvas.drawText(context.getString(R.string.pressAny), rectWidth, rectWidth * 3, paint);
-            }
+        return dirtyRect;
+    }
+
+    private void drawFrame(Canvas canvas, FrameSnapshot snapshot)
+    {
+        // Only the area the surface asked for needs to be covered, everything else is kept from last time
+        canvas.getClipBounds(clipRect);
+        canvas.drawBitmap(stackState, clipRect, clipRect, bitmapPaint);
+
+        // Paint the active piece onto the canvas
+        Block.Shape shape = snapshot.getPieceShape();
+        if(shape != null)
+            for(Cell c : shape.getRotations()[snapshot.getPieceRotation()])
+                drawTile(canvas, shape, c.x + snapshot.getPieceX(), c.y + snapshot.getPieceY());
+
+        if(metricsText != null)
+            drawMetrics(canvas);
+
+        if(snapshot.getGameOver() != null)
+        {
+            // Draw a message
+            textPaint.setTextSize(rectWidth);
+
+            // shadow
+            textPaint.setColor(Color.DKGRAY);
+            canvas.drawText(context.getString(R.string.gameover), rectWidth + 2, rectWidth + 2, textPaint);
+            canvas.drawText(context.getString(R.string.pressAny), rectWidth + 2, rectWidth * 3 + 2, textPaint);
+
+            textPaint.setColor(Color.WHITE);
+            canvas.drawText(context.getString(R.string.gameover), rectWidth, rectWidth, textPaint);
+            canvas.drawText(context.getString(R.string.pressAny), rectWidth, rectWidth * 3, textPaint);
+        }
+    }
+
+    // Draws one row of the stack onto the stack bitmap
+    private void drawRow(FrameSnapshot snapshot, int y)
+    {
+        int top = (20 - y) * rectWidth - rectWidth;
+
+        // Black out the old row first
+        clipRect.set(0, top, stackState.getWidth(), top + rectWidth);
+        stackCanvas.save();
+        stackCanvas.clipRect(clipRect);
+        stackCanvas.drawColor(Color.BLACK);
+        stackCanvas.restore();
+
+        for(int x = 0; x < 10; x++)
+        {
+            int cell = snapshot.getCell(x, y);
+            // The row is already black so we don't have to draw that.
+            if(cell != 0)
+                drawTile(stackCanvas, SHAPES[cell - 1], x, y);
+        }
+    }
+
+    // Copies a tile out of the atlas into the cell at (x, y)
+    private void drawTile(Canvas canvas, Block.Shape shape, int x, int y)
+    {
+        cellRect.set(x * rectWidth,
+                (20 - y) * rectWidth - rectWidth,
+                x * rectWidth + rectWidth,
+                (20 - y) * rectWidth);
+        canvas.drawBitmap(tileAtlas, tileRects[shape.ordinal()], cellRect, bitmapPaint);
+    }
+
+    // Lays out every nine-patch once at the current cell size, so cells are plain bitmap copies after that
+    private void buildAtlas()
+    {
+        if(tileAtlas != null)
+            tileAtlas.recycle();
+
+        int size = Math.max(rectWidth, 1);
+        tileAtlas = Bitmap.createBitmap(size * tiles.length, size, Bitmap.Config.RGB_565);
+        Canvas atlas = new Canvas(tileAtlas);
+        atlas.drawColor(Color.BLACK);
+
+        for(int i = 0; i < tiles.length; i++)
+        {
+            tileRects[i].set(i * size, 0, i * size + size, size);
+            tiles[i].setBounds(tileRects[i]);
+            tiles[i].draw(atlas);
         }
     }
 
-    private void drawBlock(Block block, Canvas canvas)
+    // Timing overlay in the top corner
+    private void drawMetrics(Canvas canvas)
+    {
+        metrics.summarize(metricsText);
+        canvas.drawText(metricsText, 0, metricsText.length(), 2, metricsPaint.getTextSize(), metricsPaint);
+    }
+
+    // Takes effect the next time the thread starts
+    @Override
+    public void setMetrics(FrameMetrics metrics, boolean showOverlay)
     {
-        NinePatchDrawable tile = htShapes.get(block.getShape());
-        for (Point coord : block.getAbsoluteCoordinates())
+        this.metrics = metrics;
+        if(showOverlay)
         {
-            tile.setBounds(coord.x * rectWidth,
-                    (20 - coord.y) * rectWidth - rectWidth,
-                    coord.x * rectWidth + rectWidth,
-                    (20 - coord.y) * rectWidth);
-            tile.draw(canvas);
+            metricsText = new StringBuilder();
+            metricsPaint = new Paint();
+            metricsPaint.setColor(Color.WHITE);
+            metricsPaint.setTextSize(getResources().getDisplayMetrics().scaledDensity * 10);
         }
     }
 
+    @Override
+    public FrameMetrics getMetrics() { return metrics; }
+    @Override
     public GameManager getGame() { return game; }
-    public void stop() {
+    @Override
+    public void stop()
+    {
+        // Waits for the thread, so the game is safe to touch once this returns
         if(thread != null)
         {
             thread.setRunning(false);
+            boolean retry = true;
+            while(retry)
+            {
+                try
+                {
+                    thread.join();
+                    retry = false;
+                } catch (InterruptedException e) {}
+            }
+            thread = null;
         }
     }
+    @Override
     public void start()
     {
-        if(thread != null)
-        {
-            thread.setRunning(true);
-        }
-        else
+        if(thread == null)
         {
             thread = new GameThread(this);
             thread.setRunning(true);
             thread.start();
         }
     }
-    public boolean getRedraw() { return game.getPieceRedraw() || game.getStackRedraw(); }
+    @Override
+    public boolean getRedraw() { return gameStarted && (snapshots.isFresh() || fullRedraw); }
 }
@@ -0,0 +1,137 @@
+package ca.alexcomeau.texmobile.game;
+
+import android.graphics.drawable.Drawable;
+import android.view.Choreographer;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The score, level and next piece next to the board.
+// Any thread can hand it values, but the views only get touched once a vsync at most, and only for what changed.
+public class HudModel implements Choreographer.FrameCallback
+{
+    private static final int SCORE = 1;
+    private static final int LEVEL = 2;
+    private static final int NEXT = 4;
+    // Enough for the label and "999 / 999", or a score with all its digits
+    private static final int MAX_DIGITS = 24;
+
+    private final TextView txtScore;
+    private final TextView txtLevel;
+    private final ImageView imgNext;
+    private final EnumMap<Block.Shape, ? extends Drawable> nextPieces;
+    private final Choreographer choreographer;
+    // Text is built in here and the views are pointed at it, so updates don't make strings
+    private final char[] scoreText;
+    private final char[] levelText;
+    private final int scoreLabel;
+    private final int levelLabel;
+
+    private volatile int score = -1;
+    private volatile int level = -1;
+    private volatile int maxLevel = -1;
+    private volatile Block.Shape next;
+    // Which fields changed since the views were last updated
+    private final AtomicInteger changed = new AtomicInteger();
+    // Whether a frame callback is already waiting, so there's never more than one
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Has to be made on the UI thread
+    public HudModel(TextView txtScore, TextView txtLevel, ImageView imgNext,
+                    EnumMap<Block.Shape, ? extends Drawable> nextPieces, String scoreLabel, String levelLabel)
+    {
+        this.txtScore = txtScore;
+        this.txtLevel = txtLevel;
+        this.imgNext = imgNext;
+        this.nextPieces = nextPieces;
+        choreographer = Choreographer.getInstance();
+
+        scoreText = new char[scoreLabel.length() + MAX_DIGITS];
+        levelText = new char[levelLabel.length() + MAX_DIGITS];
+        scoreLabel.getChars(0, scoreLabel.length(), scoreText, 0);
+        levelLabel.getChars(0, levelLabel.length(), levelText, 0);
+        this.scoreLabel = scoreLabel.length();
+        this.levelLabel = levelLabel.length();
+    }
+
+    // Called by whoever draws the game, as often as it likes
+    public void show(int score, int level, int maxLevel, Block.Shape next)
+    {
+        int fields = 0;
+        if(score != this.score)
+        {
+            this.score = score;
+            fields |= SCORE;
+        }
+        if(level != this.level || maxLevel != this.maxLevel)
+        {
+            this.level = level;
+            this.maxLevel = maxLevel;
+            fields |= LEVEL;
+        }
+        if(next != this.next)
+        {
+            this.next = next;
+            fields |= NEXT;
+        }
+
+        if(fields == 0)
+            return;
+
+        int old;
+        do {
+            old = changed.get();
+        } while(!changed.compareAndSet(old, old | fields));
+
+        if(scheduled.compareAndSet(false, true))
+            choreographer.postFrameCallback(this);
+    }
+
+    // Runs on the UI thread, just before the next frame is drawn
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+        // Let the next change schedule another update before taking this one's fields
+        scheduled.set(false);
+        int fields = changed.getAndSet(0);
+
+        if((fields & SCORE) != 0)
+            txtScore.setText(scoreText, 0, putInt(scoreText, scoreLabel, score));
+        if((fields & LEVEL) != 0)
+        {
+            int end = putInt(levelText, levelLabel, level);
+            levelText[end++] = ' ';
+            levelText[end++] = '/';
+            levelText[end++] = ' ';
+            txtLevel.setText(levelText, 0, putInt(levelText, end, maxLevel));
+        }
+        if((fields & NEXT) != 0)
+            imgNext.setBackground(nextPieces.get(next));
+    }
+
+    // Stops any update that's waiting, for when the views are going away
+    public void cancel()
+    {
+        choreographer.removeFrameCallback(this);
+        scheduled.set(false);
+    }
+
+    // Writes the digits of a non-negative value at pos, returns where they end
+    private static int putInt(char[] buffer, int pos, int value)
+    {
+        int digits = 1;
+        for(int rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+
+        int end = pos + digits;
+        for(int i = end - 1; i >= pos; i--)
+        {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
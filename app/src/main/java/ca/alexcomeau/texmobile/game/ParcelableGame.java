@@ -0,0 +1,57 @@
+package ca.alexcomeau.texmobile.game;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Lets a GameManager go in a Bundle, as its compact save state. The engine itself doesn't know anything about Android.
+public class ParcelableGame implements Parcelable {
+    private GameManager game;
+
+    public ParcelableGame(GameManager game) { this.game = game; }
+
+    public GameManager getGame() { return game; }
+
+    // ===== Parcelable Stuff ============================================
+    protected ParcelableGame(Parcel in) {
+        try {
+            game = GameManager.readState(new ByteArrayInputStream(in.createByteArray()));
+        } catch (IOException e) {
+            throw new BadParcelableException(e);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            game.writeState(out);
+        } catch (IOException e) {
+            // Only happens if the stream does, and this one can't
+            throw new IllegalStateException(e);
+        }
+        dest.writeByteArray(out.toByteArray());
+    }
+
+    @SuppressWarnings("unused")
+    public static final Parcelable.Creator<ParcelableGame> CREATOR = new Parcelable.Creator<ParcelableGame>() {
+        @Override
+        public ParcelableGame createFromParcel(Parcel in) {
+            return new ParcelableGame(in);
+        }
+
+        @Override
+        public ParcelableGame[] newArray(int size) {
+            return new ParcelableGame[size];
+        }
+    };
+}
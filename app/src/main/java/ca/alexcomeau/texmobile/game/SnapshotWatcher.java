@@ -0,0 +1,37 @@
+package ca.alexcomeau.texmobile.game;
+
+import ca.alexcomeau.texmobile.activities.GameActivity;
+
+// Passes on what happens off the board between the snapshots a view draws: sounds and the HUD.
+// Lives on whichever thread reads the snapshots.
+class SnapshotWatcher
+{
+    private final GameActivity activity;
+    private final HudModel hud;
+    // -1 until the first snapshot, so a restored game doesn't replay old sounds
+    private int locks = -1;
+    private int clears;
+
+    SnapshotWatcher(GameActivity activity)
+    {
+        this.activity = activity;
+        hud = activity.getHud();
+    }
+
+    void check(FrameSnapshot snapshot)
+    {
+        // A clear always comes with a lock, and only the clear gets a sound
+        if(locks >= 0)
+        {
+            if(snapshot.getClears() != clears)
+                activity.playSound(1);
+            else if(snapshot.getLocks() != locks)
+                activity.playSound(0);
+        }
+        locks = snapshot.getLocks();
+        clears = snapshot.getClears();
+
+        // The HUD works out for itself whether anything changed
+        hud.show(snapshot.getScore(), snapshot.getLevel(), snapshot.getMaxLevel(), snapshot.getNextShape());
+    }
+}
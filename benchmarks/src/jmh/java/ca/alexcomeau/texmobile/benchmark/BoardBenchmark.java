@@ -0,0 +1,85 @@
+package ca.alexcomeau.texmobile.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import ca.alexcomeau.texmobile.game.Block;
+import ca.alexcomeau.texmobile.game.Board;
+
+// Cost of the collision and line clear checks on their own.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BoardBenchmark {
+    // How many rows of the stack are filled in, leaving a gap so they never clear
+    @Param({"0", "16"})
+    public int stackHeight;
+
+    private Board board;
+    private Board clearBoard;
+    private Block block;
+
+    @Setup
+    public void setUp()
+    {
+        board = new Board();
+        // Vertical I pieces in every column but the last
+        for(int y = 0; y + 4 <= stackHeight; y += 4)
+            for(int x = 0; x < Board.WIDTH - 1; x++)
+            {
+                Block column = new Block(x - 2, y, Block.Shape.I);
+                column.rotateRight();
+                board.lockBlock(column);
+            }
+
+        block = new Block(3, stackHeight, Block.Shape.T);
+        clearBoard = new Board();
+    }
+
+    @Benchmark
+    public boolean checkBlock()
+    {
+        return board.checkBlock(block);
+    }
+
+    @Benchmark
+    public int moveChecks()
+    {
+        // What a frame does for a piece being moved around
+        int result = 0;
+        if(board.checkLeft(block)) result++;
+        if(board.checkRight(block)) result++;
+        if(board.checkDown(block)) result++;
+        if(board.checkRotateLeft(block)) result++;
+        if(board.checkRotateRight(block)) result++;
+        return result;
+    }
+
+    @Benchmark
+    public int dropDistance()
+    {
+        return board.dropDistance(block);
+    }
+
+    @Benchmark
+    public boolean lockAndClear()
+    {
+        // Five O pieces fill two rows, which then get cleared, leaving an empty board for the bravo check
+        for(int x = 0; x < Board.WIDTH; x += 2)
+            clearBoard.lockBlock(new Block(x - 1, -1, Block.Shape.O));
+
+        for(int line = 1; line >= 0; line--)
+            if(clearBoard.checkLine(line))
+                clearBoard.clearLine(line);
+
+        return clearBoard.isEmpty();
+    }
+}
@@ -0,0 +1,56 @@
+package ca.alexcomeau.texmobile.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import ca.alexcomeau.texmobile.game.GameManager;
+
+// Cost of a whole frame, including spawns, locks and line clears as they come up.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GameManagerBenchmark {
+    private static final int SCRIPT_FRAMES = 10000;
+    private static final long SEED = 20151118L;
+
+    // 0 is the slowest gravity, 500 and up is 20G
+    @Param({"0", "500"})
+    public int startLevel;
+
+    // idle stacks pieces up in the middle until the game is lost, mash moves them around
+    @Param({"idle", "mash"})
+    public String script;
+
+    private int[] input;
+    private GameManager game;
+    private int frame;
+
+    @Setup
+    public void setUp()
+    {
+        input = script.equals("idle") ? InputScripts.idle(SCRIPT_FRAMES) : InputScripts.mash(SCRIPT_FRAMES, SEED);
+        game = new GameManager();
+        game.start(startLevel, 999, SEED);
+        frame = 0;
+    }
+
+    @Benchmark
+    public int advanceFrame()
+    {
+        // Keep going with a fresh game once one ends
+        if(game.getGameOver() != null)
+            game.start(startLevel, 999, SEED);
+
+        game.advanceFrame(input[frame]);
+        frame = (frame + 1) % SCRIPT_FRAMES;
+        return game.getScore();
+    }
+}
@@ -0,0 +1,36 @@
+package ca.alexcomeau.texmobile.benchmark;
+
+import java.util.Random;
+
+import ca.alexcomeau.texmobile.game.Input;
+
+// Canned per-frame input masks for driving games without a player.
+public final class InputScripts {
+    private static final int[] BUTTONS = {Input.LEFT, Input.RIGHT, Input.DOWN, Input.ROTATE_LEFT, Input.ROTATE_RIGHT};
+
+    private InputScripts() { }
+
+    // Nothing is ever pressed, so pieces pile up in the middle of the board.
+    public static int[] idle(int frames) { return new int[frames]; }
+
+    // Buttons are held for a few frames at a time, like someone playing without much of a plan.
+    public static int[] mash(int frames, long seed)
+    {
+        Random random = new Random(seed);
+        int[] script = new int[frames];
+        int frame = 0;
+
+        while(frame < frames)
+        {
+            int held = 0;
+            if(random.nextInt(3) > 0)
+                held |= BUTTONS[random.nextInt(BUTTONS.length)];
+            if(random.nextInt(4) == 0)
+                held |= BUTTONS[random.nextInt(BUTTONS.length)];
+
+            for(int hold = 1 + random.nextInt(10); hold > 0 && frame < frames; hold--)
+                script[frame++] = held;
+        }
+        return script;
+    }
+}
@@ -0,0 +1,52 @@
+package ca.alexcomeau.texmobile.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ca.alexcomeau.texmobile.bot.Move;
+import ca.alexcomeau.texmobile.bot.MoveGenerator;
+import ca.alexcomeau.texmobile.game.GameManager;
+
+// Cost of finding every placement for one piece. Has to fit in a frame at 20G to plan as pieces spawn.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MoveGeneratorBenchmark {
+    private static final long SEED = 20151118L;
+
+    // 0 is the slowest gravity, 500 and up is 20G
+    @Param({"0", "500"})
+    public int startLevel;
+
+    private MoveGenerator generator;
+    private GameManager game;
+
+    @Setup
+    public void setUp()
+    {
+        // Mash for a while to get a messy stack, then stop as a piece comes in
+        int[] input = InputScripts.mash(2000, SEED);
+        game = new GameManager();
+        game.start(startLevel, 999, SEED);
+        for(int i = 0; i < input.length && game.getGameOver() == null; i++)
+            game.advanceFrame(input[i]);
+        while(game.getPieceShape() == null && game.getGameOver() == null)
+            game.advanceFrame(0);
+        generator = new MoveGenerator();
+    }
+
+    @Benchmark
+    public List<Move> generate()
+    {
+        return generator.generate(game);
+    }
+}
@@ -0,0 +1,273 @@
+package ca.alexcomeau.texmobile.bot;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.HistoryRandomizer;
+import ca.alexcomeau.texmobile.game.Replay;
+import ca.alexcomeau.texmobile.game.ReplayPlayer;
+import ca.alexcomeau.texmobile.game.RuleSet;
+
+// Plays lots of headless games and writes a line of CSV for each, for tuning the level curve and the grade
+// thresholds against real play. Games are spread over a work-stealing ForkJoinPool. Each one runs start to
+// finish on one worker with its own engine, and its own bot if a bot is playing. The workers share the queue
+// their finished lines go through to the writer, and bots can share a transposition table.
+//
+// Run with: BatchRunner <games> <start level> <max level> <out.csv> [rules=<name>] [scaling]
+public class BatchRunner {
+    // Followed by a column for each of the rules' checkpoints
+    private static final String CSV_COLUMNS = "game,seed,start_level,max_level,score,grade,frames,level,result";
+    // Longest a game gets to run: an hour of play
+    public static final int MAX_FRAMES = GameManager.FRAME_RATE * 60 * 60;
+    // Put on the queue in place of a line when a game throws, so the writer doesn't wait for it forever
+    private static final String FAILED = "";
+
+    // One game. Everything it needs is made in play(), on the worker that runs it.
+    public interface Job {
+        GameManager play();
+    }
+
+    private final int threads;
+    // The rules the games are played by, which decide the checkpoint columns
+    private final RuleSet rules;
+
+    public BatchRunner(int threads, RuleSet rules)
+    {
+        this.threads = threads;
+        this.rules = rules;
+    }
+
+    public BatchRunner(int threads) { this(threads, RuleSet.STANDARD); }
+
+    // A game played by a bot from a seed by the standard rules. A budget of 0 gives the same game every time.
+    public static Job botGame(long seed, int startLevel, int maxLevel, long budgetNanos)
+    {
+        return botGame(RuleSet.STANDARD, seed, startLevel, maxLevel, budgetNanos, null);
+    }
+
+    // The same by the given rules, with the bot looking stacks up in a table shared with the other games.
+    // Null gives it its own.
+    public static Job botGame(final RuleSet rules, final long seed, final int startLevel, final int maxLevel,
+                              final long budgetNanos, final TranspositionTable table)
+    {
+        return new Job() {
+            @Override
+            public GameManager play()
+            {
+                // One thread, so the lookahead runs on the batch's worker rather than a pool of the bot's own
+                Bot bot = table == null ? new Bot(Heuristic.DEFAULT, 1, budgetNanos)
+                        : new Bot(Heuristic.DEFAULT, 1, budgetNanos, table);
+                try {
+                    GameManager game = new GameManager(new HistoryRandomizer(), rules);
+                    game.start(startLevel, maxLevel, seed);
+                    return new BotPlayer(bot).play(game, MAX_FRAMES);
+                } finally {
+                    bot.close();
+                }
+            }
+        };
+    }
+
+    // A recorded game played back
+    public static Job replayGame(final Replay replay)
+    {
+        return new Job() {
+            @Override
+            public GameManager play() { return new ReplayPlayer(replay).playToEnd(); }
+        };
+    }
+
+    // Plays every job and writes a line to csv for each, in the order they finish. Returns games per second.
+    public double run(List<Job> jobs, Writer csv) throws IOException, InterruptedException
+    {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            Games all = new Games(jobs, 0, jobs.size(), lines);
+            pool.execute(all);
+
+            csv.write(csvHeader(rules));
+            csv.write('\n');
+            for(int i = 0; i < jobs.size(); i++)
+            {
+                String line = lines.take();
+                if(!line.isEmpty())
+                {
+                    csv.write(line);
+                    csv.write('\n');
+                }
+            }
+            csv.flush();
+            // Throws whatever a game threw
+            all.join();
+        } finally {
+            pool.shutdown();
+        }
+        return jobs.size() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // Plays the jobs with each number of threads, and reports how close each comes to scaling perfectly
+    // from the first. The lines are thrown away.
+    public static String scalingReport(List<Job> jobs, int[] threadCounts) throws IOException, InterruptedException
+    {
+        StringBuilder report = new StringBuilder("threads,games_per_second,speedup,efficiency\n");
+        double first = 0;
+        for(int threads : threadCounts)
+        {
+            double rate = new BatchRunner(threads).run(jobs, new DiscardWriter());
+            if(first == 0)
+                first = rate;
+            double speedup = rate / first;
+            report.append(threads).append(',')
+                    .append(String.format("%.2f", rate)).append(',')
+                    .append(String.format("%.2f", speedup)).append(',')
+                    .append(String.format("%.2f", speedup * threadCounts[0] / threads)).append('\n');
+        }
+        return report.toString();
+    }
+
+    // One line of CSV for a finished game
+    static String toCsv(int index, GameManager game)
+    {
+        Boolean over = game.getGameOver();
+        String result = over == null ? "unfinished" : over ? "won" : "lost";
+        StringBuilder line = new StringBuilder();
+        line.append(index).append(',')
+                .append(game.getSeed()).append(',')
+                .append(game.getStartLevel()).append(',')
+                .append(game.getMaxLevel()).append(',')
+                .append(game.getScore()).append(',')
+                .append(game.getGrade()).append(',')
+                .append(game.getFrames()).append(',')
+                .append(game.getLevel()).append(',')
+                .append(result);
+        for(int checkpoint = 1; checkpoint <= game.getRules().getCheckpoints(); checkpoint++)
+            line.append(',').append(checkpoint(game, checkpoint));
+        return line.toString();
+    }
+
+    public static String csvHeader(RuleSet rules)
+    {
+        StringBuilder header = new StringBuilder(CSV_COLUMNS);
+        for(int checkpoint = 1; checkpoint <= rules.getCheckpoints(); checkpoint++)
+            header.append(",checkpoint").append(checkpoint);
+        return header.toString();
+    }
+
+    // pass, fail, or - if it was never reached or the game couldn't go for GM
+    private static String checkpoint(GameManager game, int checkpoint)
+    {
+        if(!game.getRules().allowsGrandmaster(game.getStartLevel(), game.getMaxLevel()))
+            return "-";
+        if(checkpoint <= game.getCheckpointsPassed())
+            return "pass";
+        if(checkpoint == game.getCheckpointsPassed() + 1 && !game.isGrandmasterValid())
+            return "fail";
+        return "-";
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int games = Integer.parseInt(args[0]);
+        int startLevel = Integer.parseInt(args[1]);
+        int maxLevel = Integer.parseInt(args[2]);
+        RuleSet rules = RuleSet.STANDARD;
+        boolean scaling = false;
+        for(int i = 4; i < args.length; i++)
+        {
+            if(args[i].startsWith("rules="))
+                rules = RuleSet.forName(args[i].substring("rules=".length()));
+            else if(args[i].equals("scaling"))
+                scaling = true;
+            else
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+
+        // Every bot in the batch plays with the same heuristic, so they can all share one table
+        TranspositionTable table = new TranspositionTable(TranspositionTable.DEFAULT_BUDGET * 8);
+        List<Job> jobs = new ArrayList<>(games);
+        for(int i = 0; i < games; i++)
+            jobs.add(botGame(rules, i, startLevel, maxLevel, 0, table));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        Writer csv = new BufferedWriter(new FileWriter(args[3]));
+        try {
+            double rate = new BatchRunner(cores, rules).run(jobs, csv);
+            System.out.println(String.format("%d games on %d threads, %.2f games/s", games, cores, rate));
+        } finally {
+            csv.close();
+        }
+
+        if(scaling)
+        {
+            // A table left over from an earlier run would make the later ones look faster, so each bot gets its own
+            jobs.clear();
+            for(int i = 0; i < games; i++)
+                jobs.add(botGame(rules, i, startLevel, maxLevel, 0, null));
+
+            List<Integer> counts = new ArrayList<>();
+            for(int n = 1; n < cores; n *= 2)
+                counts.add(n);
+            counts.add(cores);
+            int[] threadCounts = new int[counts.size()];
+            for(int i = 0; i < threadCounts.length; i++)
+                threadCounts[i] = counts.get(i);
+            System.out.print(scalingReport(jobs, threadCounts));
+        }
+    }
+
+    // Inner classes ===============================================================
+    // Splits the jobs in half until there's one each, so idle workers can steal whole halves
+    private static class Games extends RecursiveAction {
+        private final List<Job> jobs;
+        private final int from, to;
+        private final BlockingQueue<String> lines;
+
+        Games(List<Job> jobs, int from, int to, BlockingQueue<String> lines)
+        {
+            this.jobs = jobs;
+            this.from = from;
+            this.to = to;
+            this.lines = lines;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Games(jobs, from, mid, lines), new Games(jobs, mid, to, lines));
+                return;
+            }
+            if(from == to)
+                return;
+
+            String line = FAILED;
+            try {
+                line = toCsv(from, jobs.get(from).play());
+            } finally {
+                lines.add(line);
+            }
+        }
+    }
+
+    private static class DiscardWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) { }
+        @Override
+        public void flush() { }
+        @Override
+        public void close() { }
+    }
+}
@@ -0,0 +1,284 @@
+package ca.alexcomeau.texmobile.bot;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.alexcomeau.texmobile.game.Block;
+import ca.alexcomeau.texmobile.game.Board;
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.Input;
+
+// Picks where each piece goes. Placements come from a MoveGenerator, and each one's input is then played on
+// a copy of the game, so movement, rotation, wall kicks, gravity and lock delay are exactly the engine's and a
+// plan never asks for something the game won't do. Every placement of the current piece is followed by every placement of
+// the preview piece (the one getNextBlock() hands out), and the best stack two pieces on wins.
+//
+// The lookahead is split over a fork/join pool, or run on the calling thread for a bot given one thread, and
+// stops at the time budget, with the placements that look best on their own tried first. What the preview piece can do from a stack is kept in a transposition
+// table, so the same stack reached another way, on the next turn, or by another bot sharing the table isn't
+// searched again. ForkJoinPool needs Android 5, so this is for the JVM: soak tests
+// and generating reference play.
+public class Bot implements Closeable {
+    // Longest to wait for the next piece to show up after one locks
+    private static final int MAX_FRAMES = 600;
+    public static final long DEFAULT_BUDGET = 50000000L;
+
+    // Searches run on the pool's threads or the caller's, and a generator can only do one at a time
+    private static final ThreadLocal<MoveGenerator> GENERATORS = new ThreadLocal<MoveGenerator>() {
+        @Override
+        protected MoveGenerator initialValue() { return new MoveGenerator(); }
+    };
+
+    private static final Comparator<Candidate> BEST_FIRST = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) { return Double.compare(b.score, a.score); }
+    };
+
+    private final Heuristic heuristic;
+    // Null when the lookahead runs on the thread that asked for it
+    private final ForkJoinPool pool;
+    private final long budgetNanos;
+    private final TranspositionTable table;
+    // Only a bot with a table to itself ages it, see TranspositionTable
+    private final boolean ownTable;
+
+    // One placement of a piece, and the game right after it locked
+    private static class Candidate {
+        int rotation, x, y;
+        int[] inputs;
+        GameManager after;
+        int lines;
+        // Just this piece, then with the best the preview piece can do after it if there was time
+        double score, deepScore;
+        boolean deep;
+    }
+
+    // A budget of 0 or less always finishes the lookahead, which makes the bot play the same game every time.
+    // The table can be shared with other bots using the same heuristic.
+    public Bot(Heuristic heuristic, int threads, long budgetNanos, TranspositionTable table)
+    {
+        this(heuristic, threads, budgetNanos, table, false);
+    }
+
+    public Bot(Heuristic heuristic, int threads, long budgetNanos)
+    {
+        this(heuristic, threads, budgetNanos, new TranspositionTable(), true);
+    }
+
+    public Bot() { this(Heuristic.DEFAULT, Runtime.getRuntime().availableProcessors(), DEFAULT_BUDGET); }
+
+    private Bot(Heuristic heuristic, int threads, long budgetNanos, TranspositionTable table, boolean ownTable)
+    {
+        this.heuristic = heuristic;
+        this.budgetNanos = budgetNanos;
+        this.table = table;
+        this.ownTable = ownTable;
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    // The best place for the piece in play, or null if there's no piece or it can't be put anywhere.
+    // The game isn't touched.
+    public Placement choose(GameManager game)
+    {
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        if(game.getPieceShape() == null || game.getGameOver() != null)
+            return null;
+
+        // Out of time part way through, the placements played out so far are all there is to pick from
+        Candidate[] candidates = candidates(game, deadline, true);
+        if(candidates.length == 0)
+            return null;
+        for(Candidate c : candidates)
+            c.score = score(c.after, c.lines);
+
+        Arrays.sort(candidates, BEST_FIRST);
+        if(ownTable)
+            table.newSearch();
+        if(pool != null && System.nanoTime() <= deadline)
+            pool.invoke(new Lookahead(candidates, 0, candidates.length, deadline));
+        else
+            for(Candidate c : candidates)
+                lookahead(c, deadline);
+
+        // Placements that got the lookahead can only be compared with each other
+        Candidate best = null;
+        for(Candidate c : candidates)
+            if(c.deep && (best == null || c.deepScore > best.deepScore))
+                best = c;
+        if(best == null)
+            return new Placement(candidates[0].rotation, candidates[0].x, candidates[0].y, candidates[0].inputs,
+                    candidates[0].score);
+        return new Placement(best.rotation, best.x, best.y, best.inputs, best.deepScore);
+    }
+
+    @Override
+    public void close()
+    {
+        if(pool != null)
+            pool.shutdown();
+    }
+
+    // Private Methods ============================================================
+    private double score(GameManager game, int lines)
+    {
+        if(game.getGameOver() != null)
+            return game.getGameOver() ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        return heuristic.evaluate(game.getBoard(), lines);
+    }
+
+    // Follows the placement with each placement of the next piece. Leaves it shallow if time runs out first.
+    private void lookahead(Candidate c, long deadline)
+    {
+        if(System.nanoTime() > deadline)
+            return;
+        if(c.after.getGameOver() != null)
+        {
+            c.deepScore = c.score;
+            c.deep = true;
+            return;
+        }
+
+        // Wait out the line clear and the spawn delay for the preview piece
+        GameManager waiting = c.after.copy();
+        for(int frames = 0; waiting.getPieceShape() == null && waiting.getGameOver() == null && frames < MAX_FRAMES; frames++)
+            waiting.advanceFrame(0);
+        if(waiting.getPieceShape() == null || waiting.getGameOver() != null)
+        {
+            c.deepScore = score(waiting, c.lines);
+            c.deep = true;
+            return;
+        }
+
+        // Lines count the same wherever they're cleared, so the best of the next piece is stored without this
+        // piece's lines and they're added back on
+        long key = TranspositionTable.key(waiting);
+        double best = table.get(key, 1);
+        if(Double.isNaN(best))
+        {
+            // Only the best of every placement counts, so running out of time leaves this one shallow
+            Candidate[] next = candidates(waiting, deadline, false);
+            if(next == null)
+                return;
+            best = Double.NEGATIVE_INFINITY;
+            for(Candidate n : next)
+                best = Math.max(best, score(n.after, n.lines));
+            table.put(key, 1, best);
+        }
+
+        c.deepScore = best + heuristic.lineValue(c.lines);
+        c.deep = true;
+    }
+
+    // Every distinct place the piece in play can lock, played out. If the deadline passes first, it's the ones
+    // played out so far (at least one) if partial is set, otherwise null.
+    private static Candidate[] candidates(GameManager game, long deadline, boolean partial)
+    {
+        int cells = Heuristic.cellCount(game.getBoard());
+        List<Candidate> result = new ArrayList<>();
+        MoveGenerator generator = GENERATORS.get();
+        List<Move> moves = generator.generate(game, deadline);
+        if(!generator.isComplete())
+        {
+            if(!partial)
+                return null;
+            // Nothing found in time, so it goes where it can get to quickest
+            if(moves.isEmpty())
+            {
+                Candidate c = drop(game, cells);
+                return c == null ? new Candidate[0] : new Candidate[] { c };
+            }
+        }
+
+        for(Move move : moves)
+        {
+            if(System.nanoTime() > deadline)
+            {
+                if(!partial)
+                    return null;
+                if(!result.isEmpty())
+                    break;
+            }
+
+            Candidate c = simulate(game, move.getInputs(), cells);
+            // Anything the game doesn't agree with is left out rather than planned
+            if(c != null && c.rotation == move.getRotation() && c.x == move.getX() && c.y == move.getY())
+                result.add(c);
+        }
+        return result.toArray(new Candidate[result.size()]);
+    }
+
+    // Straight down from where it is, pressing down every other frame so it's never held
+    private static Candidate drop(GameManager game, int cells)
+    {
+        int[] inputs = new int[MAX_FRAMES];
+        for(int i = 0; i < inputs.length; i += 2)
+            inputs[i] = Input.DOWN;
+
+        // Find out how long it takes to lock, then keep just that much
+        GameManager trial = game.copy();
+        int locks = trial.getLocks();
+        int frames = 0;
+        while(trial.getLocks() == locks && trial.getGameOver() == null && frames < inputs.length)
+            trial.advanceFrame(inputs[frames++]);
+        if(trial.getLocks() == locks)
+            return null;
+        return simulate(game, Arrays.copyOf(inputs, frames), cells);
+    }
+
+    // Plays the input on a copy of the game. Null unless the piece locks on the last frame of it.
+    private static Candidate simulate(GameManager start, int[] inputs, int cellsBefore)
+    {
+        GameManager game = start.copy();
+        int locks = game.getLocks();
+        for(int i = 0; i < inputs.length; i++)
+        {
+            if(game.getLocks() != locks || game.getGameOver() != null)
+                return null;
+            game.advanceFrame(inputs[i]);
+        }
+        if(game.getLocks() != locks + 1)
+            return null;
+
+        Candidate c = new Candidate();
+        Block locked = game.getLockedBlock();
+        c.rotation = locked.getRotation();
+        c.x = locked.getX();
+        c.y = locked.getY();
+        c.inputs = inputs;
+        c.after = game;
+        c.lines = (cellsBefore + locked.getRelativeCoordinates().length - Heuristic.cellCount(game.getBoard())) / Board.WIDTH;
+        return c;
+    }
+
+    // Inner class =================================================================
+    private class Lookahead extends RecursiveAction {
+        private final Candidate[] candidates;
+        private final int from, to;
+        private final long deadline;
+
+        Lookahead(Candidate[] candidates, int from, int to, long deadline)
+        {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from == 1)
+            {
+                lookahead(candidates[from], deadline);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Lookahead(candidates, from, mid, deadline), new Lookahead(candidates, mid, to, deadline));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ca.alexcomeau.texmobile.bot;
+
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.Input;
+
+// Plays a game with a bot. Ask it for each frame's input before advancing the game: it plans as soon as a
+// piece shows up, then hands the plan out a frame at a time.
+public class BotPlayer {
+    private final Bot bot;
+    private int[] plan;
+    private int step;
+    // Which piece the plan is for, counted by locks
+    private int plannedFor;
+
+    public BotPlayer(Bot bot)
+    {
+        this.bot = bot;
+        plannedFor = -1;
+    }
+
+    public int nextInput(GameManager game)
+    {
+        if(game.getPieceShape() == null)
+            return 0;
+
+        if(game.getLocks() != plannedFor)
+        {
+            Placement placement = bot.choose(game);
+            plan = placement == null ? null : placement.getInputs();
+            step = 0;
+            plannedFor = game.getLocks();
+        }
+
+        // Nothing planned or the plan ran out: drop it where it is
+        return plan != null && step < plan.length ? plan[step++] : Input.DOWN;
+    }
+
+    // Plays the whole game, up to the given number of frames
+    public GameManager play(GameManager game, int maxFrames)
+    {
+        while(game.getGameOver() == null && game.getFrames() < maxFrames)
+            game.advanceFrame(nextInput(game));
+        return game;
+    }
+}
@@ -0,0 +1,57 @@
+package ca.alexcomeau.texmobile.bot;
+
+import ca.alexcomeau.texmobile.game.Board;
+
+// Scores a stack for the bot, higher being better. A weighted sum of the usual four features:
+// how tall the columns are altogether, lines cleared, holes under the surface, and how uneven the surface is.
+public final class Heuristic {
+    // Weights that play a steady game at any speed
+    public static final Heuristic DEFAULT = new Heuristic(-0.510066, 0.760666, -0.35663, -0.184483);
+
+    private final double height;
+    private final double lines;
+    private final double holes;
+    private final double bumpiness;
+
+    public Heuristic(double height, double lines, double holes, double bumpiness)
+    {
+        this.height = height;
+        this.lines = lines;
+        this.holes = holes;
+        this.bumpiness = bumpiness;
+    }
+
+    public double evaluate(Board board, int linesCleared)
+    {
+        int totalHeight = 0;
+        int totalHoles = 0;
+        int bumps = 0;
+        int previous = -1;
+
+        for(int x = 0; x < Board.WIDTH; x++)
+        {
+            int column = board.getColumn(x);
+            int columnHeight = 32 - Integer.numberOfLeadingZeros(column);
+            totalHeight += columnHeight;
+            // Every empty cell under the top of the column
+            totalHoles += columnHeight - Integer.bitCount(column);
+            if(previous >= 0)
+                bumps += Math.abs(columnHeight - previous);
+            previous = columnHeight;
+        }
+
+        return height * totalHeight + lines * linesCleared + holes * totalHoles + bumpiness * bumps;
+    }
+
+    // What clearing that many lines adds to a score
+    double lineValue(int linesCleared) { return lines * linesCleared; }
+
+    // Filled cells on the board. Lines cleared by a lock are the cells that went missing, over the width.
+    static int cellCount(Board board)
+    {
+        int cells = 0;
+        for(int y = 0; y < Board.HEIGHT; y++)
+            cells += Integer.bitCount(board.getRow(y));
+        return cells;
+    }
+}
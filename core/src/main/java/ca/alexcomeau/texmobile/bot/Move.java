@@ -0,0 +1,24 @@
+package ca.alexcomeau.texmobile.bot;
+
+// A place the piece in play can come to rest, and the quickest input that gets it there.
+public final class Move {
+    private final int rotation;
+    private final int x;
+    private final int y;
+    private final int[] inputs;
+
+    Move(int rotation, int x, int y, int[] inputs)
+    {
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+        this.inputs = inputs;
+    }
+
+    // Where the piece locks
+    public int getRotation() { return rotation; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    // One input mask a frame, starting with the next frame. The piece locks on the last one.
+    public int[] getInputs() { return inputs; }
+}
@@ -0,0 +1,375 @@
+package ca.alexcomeau.texmobile.bot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.alexcomeau.texmobile.game.Block;
+import ca.alexcomeau.texmobile.game.Board;
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.Input;
+
+// Finds every place the piece in play can come to rest, each with the shortest input that gets it there.
+// A breadth-first search, a frame at a time, over what the piece can be doing: where it is, how it's turned,
+// how far through its gravity and lock delay it is, and which button was down last frame. Frames are
+// stepped with the game's own rules (Board.rotatedX for rotations and kicks), so under 20G pieces slide
+// along the stack and under slow gravity they can be tucked under overhangs.
+//
+// Input is one button a frame, let go before it's pressed again so it's never held long enough to be
+// swallowed by the auto shift delay. Placements that cover the same cells count once, whichever rotation
+// got there, so symmetric rotations aren't scored twice.
+//
+// Not thread safe. Keep one around per thread: the visited set is a megabyte or more, depending on how long
+// the rules make the gravity and lock delay, and only the bits that were set get cleared after each search.
+public final class MoveGenerator {
+    // The buttons tried each frame, and what each counts as for repeat presses
+    private static final int[] BUTTONS = { 0, Input.LEFT, Input.RIGHT, Input.DOWN, Input.ROTATE_LEFT, Input.ROTATE_RIGHT };
+    private static final int LAST_NONE = 0;
+    private static final int LAST_LEFT = 1;
+    private static final int LAST_RIGHT = 2;
+    private static final int LAST_DOWN = 3;
+    private static final int LAST_ROTATE = 4;
+    // Held over from before the search in some combination; only letting go is safe
+    private static final int LAST_ANY = 5;
+    private static final int[] LAST = { LAST_NONE, LAST_LEFT, LAST_RIGHT, LAST_DOWN, LAST_ROTATE, LAST_ROTATE };
+
+    // State packing: x + 4, y + 3, rotation, gravity wait, lock wait, last button. Pieces' cells are
+    // offset from their corner, so x and y go a little below 0 against the wall and floor. The waits get
+    // as many bits as the rules of the search need, so the fields after them move.
+    private static final int X_OFFSET = 4;
+    private static final int Y_OFFSET = 3;
+    private static final int Y_SHIFT = 4;
+    private static final int ROTATION_SHIFT = 9;
+    private static final int FALL_SHIFT = 11;
+    private static final int LAST_BITS = 3;
+    // Enough for the standard rules' 32 frame gravity and 15 frame lock delay
+    private static final int MIN_STATE_BITS = 23;
+    // A 32 megabyte visited set. Past that the rules' waits are too long to search frame by frame.
+    private static final int MAX_STATE_BITS = 28;
+
+    // What a position allows, as cached by position()
+    private static final int FITS_LEFT = 1;
+    private static final int FITS_RIGHT = 1 << 1;
+    private static final int FITS_DOWN = 1 << 2;
+    private static final int ROTATE_LEFT_SHIFT = 3;
+    private static final int ROTATE_RIGHT_SHIFT = 5;
+    private static final int DROP_SHIFT = 8;
+    private static final int CANT_ROTATE = 0;
+    private static final int ROTATED = 1;
+    private static final int KICKED = 2;
+    // States expanded between looks at the clock
+    private static final int CLOCK_INTERVAL = 256;
+
+    // For each shape and rotation, the lowest rotation covering the same cells
+    private static final int[][] CANONICAL = canonicalRotations();
+
+    private long[] visited;
+    // position() results by rotation, x and y, and which search they were worked out in
+    private final int[] positions;
+    private final int[] positionSearch;
+    private int search;
+    // The search queue, which is also every state reached: packed state, where it came from, button pressed
+    private int[] states;
+    private int[] parents;
+    private byte[] buttons;
+    private int count;
+    // Whether the last search got to the end before its deadline
+    private boolean complete;
+
+    // The search in progress
+    private Board board;
+    private Block.Shape shape;
+    private int gravity;
+    private int superGravity;
+    private int lockDelay;
+    private int fallMask, lockShift, lockMask, lastShift;
+    // Where the last step locked the piece
+    private int lockedX, lockedY, lockedRotation;
+
+    public MoveGenerator()
+    {
+        visited = new long[1 << (MIN_STATE_BITS - 6)];
+        positions = new int[4 * 16 * 32];
+        positionSearch = new int[4 * 16 * 32];
+        states = new int[1024];
+        parents = new int[1024];
+        buttons = new byte[1024];
+    }
+
+    // Every resting place of the piece in play, best reached first. Empty if there's no piece.
+    public List<Move> generate(GameManager game) { return generate(game, Long.MAX_VALUE); }
+
+    // The same, but stops at the deadline (a System.nanoTime) with the placements found so far. isComplete says
+    // whether it got to the end. Throws an IllegalArgumentException if the gravity and lock delay are too long
+    // to search.
+    public List<Move> generate(GameManager game, long deadline)
+    {
+        List<Move> moves = new ArrayList<>();
+        complete = true;
+        if(game.getPieceShape() == null)
+            return moves;
+
+        board = game.getBoard();
+        shape = game.getPieceShape();
+        gravity = game.getGravity();
+        superGravity = game.getSuperGravity();
+        lockDelay = game.getLockDelay();
+        // A piece can be carried over from before the rules changed with longer waits than they'd give it
+        layOut(Math.max(gravity - 1, game.getFallWait()), Math.max(lockDelay - 1, game.getLockWait()));
+        search++;
+        // Indexed by canonical rotation, column and row of the piece's lower left corner
+        boolean[] placed = new boolean[4 * 16 * 32];
+
+        count = 0;
+        visit(pack(game.getPieceX(), game.getPieceY(), game.getPieceRotation(), game.getFallWait(),
+                game.getLockWait(), lastOf(game.getLastInput())), -1, 0);
+
+        for(int head = 0; head < count; head++)
+        {
+            if(head % CLOCK_INTERVAL == CLOCK_INTERVAL - 1 && System.nanoTime() > deadline)
+            {
+                complete = false;
+                break;
+            }
+
+            int state = states[head];
+            int x = (state & 0xF) - X_OFFSET;
+            int y = ((state >>> Y_SHIFT) & 0x1F) - Y_OFFSET;
+            int rotation = (state >>> ROTATION_SHIFT) & 0x3;
+            int fall = (state >>> FALL_SHIFT) & fallMask;
+            int lock = (state >>> lockShift) & lockMask;
+            int last = state >>> lastShift;
+
+            for(int b = 0; b < BUTTONS.length; b++)
+            {
+                // The game ignores a button held from last frame, and rotations right after any rotation
+                if(LAST[b] != LAST_NONE && (LAST[b] == last || last == LAST_ANY))
+                    continue;
+
+                int next = step(x, y, rotation, fall, lock, b);
+                if(next >= 0)
+                {
+                    if(!isVisited(next))
+                        visit(next, head, b);
+                    continue;
+                }
+
+                int key = (CANONICAL[shape.ordinal()][lockedRotation] * 16 + lockedX + shape.getLeft(lockedRotation)) * 32
+                        + lockedY + shape.getBottom(lockedRotation);
+                if(!placed[key])
+                {
+                    placed[key] = true;
+                    moves.add(new Move(lockedRotation, lockedX, lockedY, inputs(head, b)));
+                }
+            }
+        }
+
+        // Only clear what was set, it's far less than the whole set
+        for(int i = 0; i < count; i++)
+            visited[states[i] >>> 6] &= ~(1L << states[i]);
+        board = null;
+        return moves;
+    }
+
+    public boolean isComplete() { return complete; }
+
+    // Private Methods ============================================================
+    // Fits the wait fields to the longest waits the search can see, growing the visited set if it has to
+    private void layOut(int maxFall, int maxLock)
+    {
+        int fallBits = bits(maxFall);
+        int lockBits = bits(maxLock);
+        int stateBits = Math.max(FALL_SHIFT + fallBits + lockBits + LAST_BITS, MIN_STATE_BITS);
+        if(stateBits > MAX_STATE_BITS)
+            throw new IllegalArgumentException("Gravity of " + gravity + " frames and lock delay of " + lockDelay
+                    + " frames are too long to search");
+
+        fallMask = (1 << fallBits) - 1;
+        lockShift = FALL_SHIFT + fallBits;
+        lockMask = (1 << lockBits) - 1;
+        lastShift = lockShift + lockBits;
+        if(visited.length < 1 << (stateBits - 6))
+            visited = new long[1 << (stateBits - 6)];
+    }
+
+    // Bits needed to hold everything from 0 to max
+    private static int bits(int max) { return 32 - Integer.numberOfLeadingZeros(max); }
+
+    // One frame of the game for the piece with the given button down. Returns the packed state after it,
+    // or -1 if the piece locked, with where it locked in lockedX, lockedY and lockedRotation.
+    private int step(int x, int y, int rotation, int fall, int lock, int b)
+    {
+        int here = position(x, y, rotation);
+        switch(BUTTONS[b])
+        {
+            case Input.LEFT:
+                if((here & FITS_LEFT) != 0)
+                    here = position(--x, y, rotation);
+                break;
+            case Input.RIGHT:
+                if((here & FITS_RIGHT) != 0)
+                    here = position(++x, y, rotation);
+                break;
+            case Input.DOWN:
+                lock = lockDelay;
+                fall = gravity;
+                break;
+            case Input.ROTATE_LEFT:
+            {
+                int rotated = (here >>> ROTATE_LEFT_SHIFT) & 0x3;
+                if(rotated != CANT_ROTATE)
+                {
+                    // Counterclockwise kicks go right
+                    if(rotated == KICKED)
+                        x++;
+                    rotation = shape.rotateLeft(rotation);
+                    here = position(x, y, rotation);
+                }
+                break;
+            }
+            case Input.ROTATE_RIGHT:
+            {
+                int rotated = (here >>> ROTATE_RIGHT_SHIFT) & 0x3;
+                if(rotated != CANT_ROTATE)
+                {
+                    if(rotated == KICKED)
+                        x--;
+                    rotation = shape.rotateRight(rotation);
+                    here = position(x, y, rotation);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+
+        if((here & FITS_DOWN) != 0)
+        {
+            lock = 0;
+            if(gravity > 0)
+            {
+                fall++;
+                if(fall >= gravity)
+                {
+                    fall = 0;
+                    y--;
+                }
+            }
+            else
+                y -= Math.min(superGravity, here >>> DROP_SHIFT);
+        }
+        else if(++lock >= lockDelay)
+        {
+            lockedX = x;
+            lockedY = y;
+            lockedRotation = rotation;
+            return -1;
+        }
+
+        return pack(x, y, rotation, fall, lock, LAST[b]);
+    }
+
+    // What the piece can do from (x, y) in the given rotation, worked out against the board the first time
+    // it's asked for in a search. Thousands of states share each position, so this saves most collision checks.
+    private int position(int x, int y, int rotation)
+    {
+        int index = (((rotation << 4) | (x + X_OFFSET)) << 5) | (y + Y_OFFSET);
+        if(positionSearch[index] == search)
+            return positions[index];
+
+        int info = 0;
+        if(board.checkShape(shape, rotation, x - 1, y))
+            info |= FITS_LEFT;
+        if(board.checkShape(shape, rotation, x + 1, y))
+            info |= FITS_RIGHT;
+        if(board.checkShape(shape, rotation, x, y - 1))
+            info |= FITS_DOWN;
+        info |= rotateResult(board.rotatedX(shape, rotation, x, y, false), x) << ROTATE_LEFT_SHIFT;
+        info |= rotateResult(board.rotatedX(shape, rotation, x, y, true), x) << ROTATE_RIGHT_SHIFT;
+        info |= board.dropDistance(shape, rotation, x, y) << DROP_SHIFT;
+
+        positions[index] = info;
+        positionSearch[index] = search;
+        return info;
+    }
+
+    private static int rotateResult(int rotatedX, int x)
+    {
+        if(rotatedX == Board.NO_ROTATION)
+            return CANT_ROTATE;
+        return rotatedX == x ? ROTATED : KICKED;
+    }
+
+    private void visit(int state, int parent, int button)
+    {
+        if(count == states.length)
+        {
+            states = Arrays.copyOf(states, count * 2);
+            parents = Arrays.copyOf(parents, count * 2);
+            buttons = Arrays.copyOf(buttons, count * 2);
+        }
+        visited[state >>> 6] |= 1L << state;
+        states[count] = state;
+        parents[count] = parent;
+        buttons[count] = (byte) button;
+        count++;
+    }
+
+    private boolean isVisited(int state) { return (visited[state >>> 6] & (1L << state)) != 0; }
+
+    // The buttons from the start of the search to the given state, then the one that locked the piece
+    private int[] inputs(int node, int lastButton)
+    {
+        int length = 1;
+        for(int n = node; parents[n] >= 0; n = parents[n])
+            length++;
+
+        int[] inputs = new int[length];
+        inputs[length - 1] = BUTTONS[lastButton];
+        for(int n = node, i = length - 2; parents[n] >= 0; n = parents[n], i--)
+            inputs[i] = BUTTONS[buttons[n]];
+        return inputs;
+    }
+
+    private int pack(int x, int y, int rotation, int fall, int lock, int last)
+    {
+        return (x + X_OFFSET) | ((y + Y_OFFSET) << Y_SHIFT) | (rotation << ROTATION_SHIFT) | (fall << FALL_SHIFT)
+                | (lock << lockShift) | (last << lastShift);
+    }
+
+    // What a mask of buttons held before the search started rules out for the first frame
+    private static int lastOf(int input)
+    {
+        if(input == 0)
+            return LAST_NONE;
+        if((input & ~Input.ROTATIONS) == 0)
+            return LAST_ROTATE;
+        for(int b = 1; b < BUTTONS.length; b++)
+            if(input == BUTTONS[b])
+                return LAST[b];
+        return LAST_ANY;
+    }
+
+    private static int[][] canonicalRotations()
+    {
+        Block.Shape[] shapes = Block.Shape.values();
+        int[][] canonical = new int[shapes.length][];
+        for(Block.Shape shape : shapes)
+        {
+            int rotations = shape.getRotations().length;
+            int[] result = new int[rotations];
+            for(int r = 0; r < rotations; r++)
+            {
+                result[r] = r;
+                for(int other = 0; other < r; other++)
+                    if(Arrays.equals(shape.getRowMasks(r), shape.getRowMasks(other)))
+                    {
+                        result[r] = result[other];
+                        break;
+                    }
+            }
+            canonical[shape.ordinal()] = result;
+        }
+        return canonical;
+    }
+}
@@ -0,0 +1,29 @@
+package ca.alexcomeau.texmobile.bot;
+
+// Where the bot has decided to put a piece, and the input that gets it there.
+public final class Placement {
+    private final int rotation;
+    private final int x;
+    private final int y;
+    private final int[] inputs;
+    private final double score;
+
+    Placement(int rotation, int x, int y, int[] inputs, double score)
+    {
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+        this.inputs = inputs;
+        this.score = score;
+    }
+
+    // Where the piece locks
+    public int getRotation() { return rotation; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    // One input mask a frame, from the frame the plan was made on up to and including the one the piece locks on.
+    // Shared, don't change it.
+    public int[] getInputs() { return inputs; }
+    // What the heuristic made of it, counting the lookahead if there was time for it
+    public double getScore() { return score; }
+}
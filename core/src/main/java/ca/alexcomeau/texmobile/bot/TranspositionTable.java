@@ -0,0 +1,155 @@
+package ca.alexcomeau.texmobile.bot;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.alexcomeau.texmobile.game.Block;
+import ca.alexcomeau.texmobile.game.GameManager;
+
+// Search results shared between threads, keyed by the stack, the piece in play, the preview piece and the level.
+// The same stack comes up over and over: from different placements that fill the same cells, from one turn's
+// lookahead to the next turn, and from other games in a batch. Looking it up is a lot cheaper than searching it again.
+//
+// Fixed size, worked out from a memory budget up front, so it never grows. Entries are kept in buckets of four,
+// and a full bucket gives up whichever entry is worth least: ones from an older search before ones from this
+// one, and shallow ones before deep ones. Buckets are spread over a set of locks, so threads only wait on each
+// other when they hit the same stripe at the same time.
+//
+// The age is only worth anything to one searcher at a time. Bots sharing a table don't call newSearch, since each
+// would make the others' searches in progress look old. A shared table is a generation of its own, so within it
+// only depth decides what stays; whoever owns it can call newSearch between batches.
+//
+// A value only makes sense to the heuristic that worked it out, so bots only share a table if they share a heuristic.
+public final class TranspositionTable {
+    public static final long DEFAULT_BUDGET = 8L << 20;
+    // Key, value, depth and age
+    static final int ENTRY_BYTES = 8 + 8 + 1 + 1;
+    private static final int BUCKET = 4;
+    private static final int STRIPES = 64;
+    // Most buckets there can be with every entry still in one array
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    private final long[] keys;
+    private final double[] values;
+    // How many pieces ahead each value looks. 0 is an empty slot.
+    private final byte[] depths;
+    private final byte[] ages;
+    private final Object[] locks;
+    private final int bucketMask;
+    // Bumped at the start of each search. Wraps around, all that matters is whether an entry's age is this one.
+    private final AtomicInteger age = new AtomicInteger();
+
+    public TranspositionTable(long budgetBytes)
+    {
+        long buckets = Math.max(1, budgetBytes / (ENTRY_BYTES * BUCKET));
+        int size = (int) Long.highestOneBit(Math.min(buckets, MAX_BUCKETS));
+        keys = new long[size * BUCKET];
+        values = new double[size * BUCKET];
+        depths = new byte[size * BUCKET];
+        ages = new byte[size * BUCKET];
+        bucketMask = size - 1;
+
+        locks = new Object[STRIPES];
+        for(int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    public TranspositionTable() { this(DEFAULT_BUDGET); }
+
+    // Key for the game as it is. Everything that changes where pieces can go or what the lock leads to goes in:
+    // the stack, both pieces, the rules, and the level, which sets the speed and whether the game is about to be won.
+    public static long key(GameManager game)
+    {
+        long pieces = (long) game.getRules().getName().hashCode() << 32 | (long) game.getMaxLevel() << 20
+                | (long) game.getLevel() << 8 | ordinal(game.getPieceShape()) << 4 | ordinal(game.getNextShape());
+        return game.getBoard().getHash() ^ mix(pieces);
+    }
+
+    // The value stored for the key if it looked at least depth pieces ahead, otherwise NaN.
+    public double get(long key, int depth)
+    {
+        int bucket = bucket(key);
+        synchronized(locks[bucket & (STRIPES - 1)])
+        {
+            for(int i = bucket * BUCKET; i < (bucket + 1) * BUCKET; i++)
+                if(depths[i] != 0 && keys[i] == key)
+                {
+                    if(depths[i] < depth)
+                        return Double.NaN;
+                    ages[i] = (byte) age.get();
+                    return values[i];
+                }
+        }
+        return Double.NaN;
+    }
+
+    // Stores a value that looked depth pieces ahead. A shallower value than the one already there is dropped.
+    public void put(long key, int depth, double value)
+    {
+        if(depth < 1 || depth > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Depth out of range: " + depth);
+
+        int bucket = bucket(key);
+        byte now = (byte) age.get();
+        synchronized(locks[bucket & (STRIPES - 1)])
+        {
+            int victim = -1;
+            int victimWorth = Integer.MAX_VALUE;
+            for(int i = bucket * BUCKET; i < (bucket + 1) * BUCKET; i++)
+            {
+                if(depths[i] != 0 && keys[i] == key)
+                {
+                    if(depth >= depths[i])
+                        set(i, key, depth, value, now);
+                    return;
+                }
+
+                // Empty slots are worth nothing, then anything from an older search, then by depth
+                int worth = depths[i] == 0 ? -1 : depths[i] + (ages[i] == now ? Byte.MAX_VALUE : 0);
+                if(worth < victimWorth)
+                {
+                    victim = i;
+                    victimWorth = worth;
+                }
+            }
+            set(victim, key, depth, value, now);
+        }
+    }
+
+    // Marks everything stored so far as from an older search, to be replaced first
+    public void newSearch() { age.incrementAndGet(); }
+
+    public void clear()
+    {
+        for(int stripe = 0; stripe < STRIPES; stripe++)
+            synchronized(locks[stripe])
+            {
+                for(int bucket = stripe; bucket <= bucketMask; bucket += STRIPES)
+                    Arrays.fill(depths, bucket * BUCKET, (bucket + 1) * BUCKET, (byte) 0);
+            }
+    }
+
+    // How many entries fit
+    public int getCapacity() { return keys.length; }
+
+    // Private Methods ============================================================
+    private void set(int i, long key, int depth, double value, byte now)
+    {
+        keys[i] = key;
+        values[i] = value;
+        depths[i] = (byte) depth;
+        ages[i] = now;
+    }
+
+    private int bucket(long key) { return (int) (key ^ (key >>> 32)) & bucketMask; }
+
+    private static long ordinal(Block.Shape shape) { return shape == null ? 0 : shape.ordinal() + 1; }
+
+    // SplitMix64's finalizer, so keys that differ by a bit land far apart
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,73 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Deals all seven shapes in a random order, then shuffles them again.
+public class BagRandomizer implements Randomizer {
+    private static final Block.Shape[] SHAPES = Block.Shape.values();
+
+    private SeededRandom random;
+    // Shape ordinals, dealt from the front
+    private byte[] bag;
+    private int dealt;
+
+    public BagRandomizer()
+    {
+        random = new SeededRandom(System.nanoTime());
+        bag = new byte[SHAPES.length];
+        reset(System.nanoTime());
+    }
+
+    @Override
+    public void reset(long seed)
+    {
+        random.setSeed(seed);
+        for(int i = 0; i < bag.length; i++)
+            bag[i] = (byte) i;
+        dealt = bag.length;
+    }
+
+    @Override
+    public Block.Shape first() { return next(); }
+
+    @Override
+    public Block.Shape next()
+    {
+        if(dealt == bag.length)
+        {
+            // Fisher-Yates shuffle
+            for(int i = bag.length - 1; i > 0; i--)
+            {
+                int j = random.nextInt(i + 1);
+                byte swap = bag[i];
+                bag[i] = bag[j];
+                bag[j] = swap;
+            }
+            dealt = 0;
+        }
+        return SHAPES[bag[dealt++]];
+    }
+
+    @Override
+    public void writeState(DataOutputStream out) throws IOException
+    {
+        out.writeLong(random.getState());
+        out.write(bag);
+        out.writeByte(dealt);
+    }
+
+    @Override
+    public void readState(DataInputStream in) throws IOException
+    {
+        random.setState(in.readLong());
+        in.readFully(bag);
+        dealt = in.readUnsignedByte();
+        if(dealt > bag.length)
+            throw new IOException("Corrupt randomizer state");
+        for(byte b : bag)
+            if(b < 0 || b >= SHAPES.length)
+                throw new IOException("Corrupt randomizer state");
+    }
+}
@@ -0,0 +1,166 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class Block implements Serializable {
+    private int rotation;
+    private int x;
+    private int y;
+    private Shape shape;
+
+    // Block types
+    public enum Shape{
+        //[][][][]
+        I(new Cell[][]{
+                {new Cell(0,2),new Cell(1,2),new Cell(2,2),new Cell(3,2)},
+                {new Cell(2,3),new Cell(2,2),new Cell(2,1),new Cell(2,0)}
+        }),
+        //[][][]
+        //    []
+        J(new Cell[][]{
+                {new Cell(0,2),new Cell(1,2),new Cell(2,2),new Cell(2,1)},
+                {new Cell(1,3),new Cell(1,2),new Cell(1,1),new Cell(0,1)},
+                {new Cell(0,2),new Cell(0,1),new Cell(1,1),new Cell(2,1)},
+                {new Cell(1,3),new Cell(2,3),new Cell(1,2),new Cell(1,1)}
+        }),
+        //[][][]
+        //[]
+        L(new Cell[][]{
+                {new Cell(0,2),new Cell(1,2),new Cell(2,2),new Cell(0,1)},
+                {new Cell(1,3),new Cell(0,3),new Cell(1,2),new Cell(1,1)},
+                {new Cell(2,2),new Cell(0,1),new Cell(1,1),new Cell(2,1)},
+                {new Cell(1,3),new Cell(1,2),new Cell(1,1),new Cell(2,1)}
+        }),
+        //[][]
+        //[][]
+        O(new Cell[][]{
+                {new Cell(1,2),new Cell(2,2),new Cell(1,1),new Cell(2,1)}
+        }),
+        //  [][]
+        //[][]
+        S(new Cell[][]{
+                {new Cell(1,2),new Cell(2,2),new Cell(1,1),new Cell(0,1)},
+                {new Cell(0,3),new Cell(0,2),new Cell(1,2),new Cell(1,1)}
+        }),
+        //[][][]
+        //  []
+        T(new Cell[][]{
+                {new Cell(0,2),new Cell(1,2),new Cell(2,2),new Cell(1,1)},
+                {new Cell(1,3),new Cell(1,2),new Cell(0,2),new Cell(1,1)},
+                {new Cell(1,2),new Cell(0,1),new Cell(1,1),new Cell(2,1)},
+                {new Cell(1,3),new Cell(1,2),new Cell(2,2),new Cell(1,1)}
+        }),
+        //[][]
+        //  [][]
+        Z(new Cell[][]{
+                {new Cell(0,2),new Cell(1,2),new Cell(1,1),new Cell(2,1)},
+                {new Cell(2,3),new Cell(1,2),new Cell(2,2),new Cell(1,1)}
+        });
+
+        private Cell[][] rotations;
+
+        // Collision tables, precomputed for each rotation so checks only need a few integer ops.
+        // Lowest and leftmost offset covered by the shape
+        private int[] bottom;
+        private int[] left;
+        // Rightmost offset covered by the shape
+        private int[] right;
+        // One mask per row from the bottom up, bit 0 being the leftmost column
+        private int[][] rowMasks;
+        // Offset of the lowest cell in each column, from the leftmost column
+        private int[][] bottomProfile;
+
+        Shape(Cell[][] rot)
+        {
+            rotations = rot;
+            bottom = new int[rot.length];
+            left = new int[rot.length];
+            right = new int[rot.length];
+            rowMasks = new int[rot.length][];
+            bottomProfile = new int[rot.length][];
+
+            for(int r = 0; r < rot.length; r++)
+            {
+                int top = Integer.MIN_VALUE;
+                bottom[r] = Integer.MAX_VALUE;
+                left[r] = Integer.MAX_VALUE;
+                right[r] = Integer.MIN_VALUE;
+                for(Cell p : rot[r])
+                {
+                    bottom[r] = Math.min(bottom[r], p.y);
+                    top = Math.max(top, p.y);
+                    left[r] = Math.min(left[r], p.x);
+                    right[r] = Math.max(right[r], p.x);
+                }
+
+                rowMasks[r] = new int[top - bottom[r] + 1];
+                bottomProfile[r] = new int[right[r] - left[r] + 1];
+                Arrays.fill(bottomProfile[r], Integer.MAX_VALUE);
+                for(Cell p : rot[r])
+                {
+                    rowMasks[r][p.y - bottom[r]] |= 1 << (p.x - left[r]);
+                    bottomProfile[r][p.x - left[r]] = Math.min(bottomProfile[r][p.x - left[r]], p.y);
+                }
+            }
+        }
+
+        public Cell[][] getRotations() { return rotations; }
+        public int getBottom(int rotation) { return bottom[rotation]; }
+        public int getLeft(int rotation) { return left[rotation]; }
+        public int getRight(int rotation) { return right[rotation]; }
+        public int getWidth(int rotation) { return right[rotation] - left[rotation] + 1; }
+        public int[] getRowMasks(int rotation) { return rowMasks[rotation]; }
+        public int[] getBottomProfile(int rotation) { return bottomProfile[rotation]; }
+
+        // The rotation index one step clockwise of the given one
+        public int rotateRight(int rotation) { return rotation + 1 == rotations.length ? 0 : rotation + 1; }
+        // The rotation index one step counterclockwise of the given one
+        public int rotateLeft(int rotation) { return rotation == 0 ? rotations.length - 1 : rotation - 1; }
+    }
+
+    public Block(int startX, int startY, Shape shape)
+    {
+        rotation = 0;
+        x = startX;
+        y = startY;
+        this.shape = shape;
+    }
+
+    // A block that's already been moved around, for restoring saved games
+    Block(int x, int y, Shape shape, int rotation)
+    {
+        this(x, y, shape);
+        this.rotation = rotation;
+    }
+
+    public void moveUp() { y++; }
+    public void moveDown() { y--; }
+    public void moveDown(int rows) { y -= rows; }
+    public void moveLeft() { x--; }
+    public void moveRight() { x++; }
+
+    // Loops around the rotations clockwise
+    public void rotateRight() { rotation = shape.rotateRight(rotation); }
+
+    // Loops around the rotations counterclockwise
+    public void rotateLeft() { rotation = shape.rotateLeft(rotation); }
+
+    // Adds the position to the current relative coordinates and returns that.
+    public Cell[] getAbsoluteCoordinates()
+    {
+        Cell[] relative = getRelativeCoordinates();
+        Cell[] coords = new Cell[relative.length];
+
+        for(int i = 0; i < relative.length; i++)
+            coords[i] = new Cell(relative[i].x + x, relative[i].y + y);
+
+        return coords;
+    }
+
+    public Shape getShape() { return shape; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public int getRotation() { return rotation; }
+    public Cell[] getRelativeCoordinates() { return shape.getRotations()[rotation]; }
+}
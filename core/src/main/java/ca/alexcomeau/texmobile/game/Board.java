@@ -0,0 +1,292 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class Board implements Serializable {
+    public static final int WIDTH = 10;
+    public static final int HEIGHT = 22;
+    // Occupancy word of a row with every column filled
+    private static final int FULL_ROW = (1 << WIDTH) - 1;
+    private static final Block.Shape[] SHAPES = Block.Shape.values();
+    // What rotatedX returns for a rotation that doesn't fit
+    public static final int NO_ROTATION = Integer.MIN_VALUE;
+    // Zobrist key of each filled cell, [Y * WIDTH + X]. Fixed, so the same stack hashes the same in every game.
+    private static final long[] CELL_KEYS = new long[HEIGHT * WIDTH];
+
+    static
+    {
+        // SplitMix64 over a fixed seed
+        long seed = 0x5DEECE66DL;
+        for(int i = 0; i < CELL_KEYS.length; i++)
+        {
+            long z = (seed += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            CELL_KEYS[i] = z ^ (z >>> 31);
+        }
+    }
+
+    // One occupancy word per row, bit x is set if column x is filled. [Y] like the old stack.
+    private int[] rows;
+    // The same occupancy, one word per column with bit y set if row y is filled. Used for drops.
+    private int[] columns;
+    // Colour plane, [Y * WIDTH + X]. Holds the shape ordinal + 1, or 0 for an empty cell.
+    private byte[] colors;
+    // Shape view of the colour plane for the renderer, only rebuilt when it's asked for after a change.
+    private transient Block.Shape[][] stack;
+    private boolean stackChanged;
+    // XOR of the keys of every filled cell. Only the occupancy goes in, colours don't change how a stack plays.
+    private long hash;
+
+    public Board()
+    {
+        rows = new int[HEIGHT];
+        columns = new int[WIDTH];
+        colors = new byte[HEIGHT * WIDTH];
+        // [Y][X] -- makes things a lot easier
+        stack = new Block.Shape[HEIGHT][WIDTH];
+        stackChanged = false;
+    }
+
+    // Checks whether the block is currently in a legal position.
+    public boolean checkBlock(Block block)
+    {
+        return checkShape(block.getShape(), block.getRotation(), block.getX(), block.getY());
+    }
+
+    // Checks whether a block of the given shape and rotation would be in a legal position at (x, y).
+    // Only reads the shape's precomputed tables, so nothing gets allocated and no block needs to be moved around.
+    public boolean checkShape(Block.Shape shape, int rotation, int x, int y)
+    {
+        int left = x + shape.getLeft(rotation);
+        int bottom = y + shape.getBottom(rotation);
+
+        if(bottom < 0 || left < 0 || x + shape.getRight(rotation) >= WIDTH)
+            return false;
+
+        int[] masks = shape.getRowMasks(rotation);
+        for(int i = 0; i < masks.length; i++)
+            if((rows[bottom + i] & (masks[i] << left)) != 0)
+                return false;
+
+        return true;
+    }
+
+    // Returns how many rows the given shape could fall from (x, y) before landing on the stack or the floor.
+    public int dropDistance(Block.Shape shape, int rotation, int x, int y)
+    {
+        int left = x + shape.getLeft(rotation);
+        int[] profile = shape.getBottomProfile(rotation);
+
+        // Can't go through the floor
+        int distance = y + shape.getBottom(rotation);
+
+        for(int i = 0; i < profile.length; i++)
+        {
+            // Find the highest filled cell under the lowest cell of this column
+            int lowest = y + profile[i];
+            int below = columns[left + i] & ((1 << lowest) - 1);
+            if(below != 0)
+                distance = Math.min(distance, lowest - (31 - Integer.numberOfLeadingZeros(below)) - 1);
+        }
+        return distance;
+    }
+
+    public int dropDistance(Block block)
+    {
+        return dropDistance(block.getShape(), block.getRotation(), block.getX(), block.getY());
+    }
+
+    // Returns whether there is room for the given piece to move left
+    public boolean checkLeft(Block block)
+    {
+        return checkShape(block.getShape(), block.getRotation(), block.getX() - 1, block.getY());
+    }
+
+    // Returns whether there is room for the given piece to move right
+    public boolean checkRight(Block block)
+    {
+        return checkShape(block.getShape(), block.getRotation(), block.getX() + 1, block.getY());
+    }
+
+    // Returns whether there is room for the given piece to move down
+    public boolean checkDown(Block block)
+    {
+        return checkShape(block.getShape(), block.getRotation(), block.getX(), block.getY() - 1);
+    }
+
+    // Returns whether there is room for the given piece to rotate clockwise
+    public boolean checkRotateRight(Block block)
+    {
+        Block.Shape shape = block.getShape();
+        return checkShape(shape, shape.rotateRight(block.getRotation()), block.getX(), block.getY());
+    }
+
+    // Returns whether there is room for the given piece to rotate counterclockwise
+    public boolean checkRotateLeft(Block block)
+    {
+        Block.Shape shape = block.getShape();
+        return checkShape(shape, shape.rotateLeft(block.getRotation()), block.getX(), block.getY());
+    }
+
+    // Where a piece at (x, y) ends up across after rotating, by the game's rules: where it is if the new
+    // rotation fits there, otherwise tapped a column over if it fits there (right when rotating counterclockwise,
+    // left when clockwise). I pieces don't kick. Returns NO_ROTATION if it can't rotate at all.
+    public int rotatedX(Block.Shape shape, int rotation, int x, int y, boolean clockwise)
+    {
+        int rotated = clockwise ? shape.rotateRight(rotation) : shape.rotateLeft(rotation);
+        if(checkShape(shape, rotated, x, y))
+            return x;
+        int kicked = clockwise ? x - 1 : x + 1;
+        if(shape != Block.Shape.I && checkShape(shape, rotated, kicked, y))
+            return kicked;
+        return NO_ROTATION;
+    }
+
+    // Returns whether the specified line is filled, and thus can be cleared.
+    public boolean checkLine(int line) { return rows[line] == FULL_ROW; }
+
+    // Returns whether there are no blocks at all in the stack.
+    public boolean isEmpty()
+    {
+        int filled = 0;
+        for(int row : rows)
+            filled |= row;
+        return filled == 0;
+    }
+
+    // Clears all the blocks from the specified line.
+    public void clearLine(int line)
+    {
+        // Every row from the line up moves, so take them all out of the hash and put them back after
+        for(int y = line; y < HEIGHT; y++)
+            hash ^= rowHash(y, rows[y]);
+
+        // Lower all the above lines by one
+        System.arraycopy(rows, line + 1, rows, line, HEIGHT - 1 - line);
+        System.arraycopy(colors, (line + 1) * WIDTH, colors, line * WIDTH, (HEIGHT - 1 - line) * WIDTH);
+
+        // Same thing for the columns, keeping the bits under the line
+        int under = (1 << line) - 1;
+        for(int i = 0; i < WIDTH; i++)
+            columns[i] = (columns[i] & under) | ((columns[i] >>> 1) & ~under);
+
+        // The top row will always be all black, blocks cannot be placed there
+        rows[HEIGHT - 1] = 0;
+        Arrays.fill(colors, (HEIGHT - 1) * WIDTH, HEIGHT * WIDTH, (byte) 0);
+
+        for(int y = line; y < HEIGHT - 1; y++)
+            hash ^= rowHash(y, rows[y]);
+        stackChanged = true;
+    }
+
+    // Saves a block to the stack.
+    public void lockBlock(Block block)
+    {
+        byte color = (byte) (block.getShape().ordinal() + 1);
+
+        // Color in the places the block is over
+        for(Cell c : block.getRelativeCoordinates())
+        {
+            int x = c.x + block.getX();
+            int y = c.y + block.getY();
+            rows[y] |= 1 << x;
+            columns[x] |= 1 << y;
+            colors[y * WIDTH + x] = color;
+            hash ^= CELL_KEYS[y * WIDTH + x];
+        }
+        stackChanged = true;
+    }
+
+    // Shape ordinal + 1 at (x, y), or 0 if the cell is empty
+    public int getCell(int x, int y) { return colors[y * WIDTH + x]; }
+
+    // Copies the colour plane, laid out the same way, into dest
+    public void copyColors(byte[] dest) { System.arraycopy(colors, 0, dest, 0, colors.length); }
+
+    // Occupancy word of the given row, bit x set if column x is filled.
+    public int getRow(int line) { return rows[line]; }
+
+    // Occupancy word of the given column, bit y set if row y is filled.
+    public int getColumn(int x) { return columns[x]; }
+
+    // Zobrist hash of the occupancy. Kept up to date by lockBlock and clearLine, so it costs nothing to ask for.
+    public long getHash() { return hash; }
+
+    public Block.Shape[][] getStack()
+    {
+        if(stack == null)
+        {
+            // Not kept when the board is serialized
+            stack = new Block.Shape[HEIGHT][WIDTH];
+            stackChanged = true;
+        }
+
+        if(stackChanged)
+        {
+            for(int i = 0; i < HEIGHT; i++)
+                for(int j = 0; j < WIDTH; j++)
+                {
+                    byte color = colors[i * WIDTH + j];
+                    stack[i][j] = color == 0 ? null : SHAPES[color - 1];
+                }
+            stackChanged = false;
+        }
+        return stack;
+    }
+
+    public boolean equals(Board other)
+    {
+        // Colours can only be set where the occupancy is, so comparing both planes covers everything
+        return Arrays.equals(rows, other.rows) && Arrays.equals(colors, other.colors);
+    }
+
+    // ===== Save state ==================================================
+    // Two cells a byte, a nibble each holding the colour. The occupancy is worked out again from the colours.
+    public void writeState(DataOutputStream out) throws IOException
+    {
+        for(int i = 0; i < colors.length; i += 2)
+            out.writeByte(colors[i] | (colors[i + 1] << 4));
+    }
+
+    public static Board readState(DataInputStream in) throws IOException
+    {
+        Board board = new Board();
+        for(int i = 0; i < board.colors.length; i += 2)
+        {
+            int packed = in.readUnsignedByte();
+            board.setColor(i, packed & 0xF);
+            board.setColor(i + 1, packed >>> 4);
+        }
+        board.stackChanged = true;
+        return board;
+    }
+
+    private void setColor(int cell, int color) throws IOException
+    {
+        if(color > SHAPES.length)
+            throw new IOException("Corrupt board");
+        if(color == 0)
+            return;
+
+        int x = cell % WIDTH;
+        int y = cell / WIDTH;
+        colors[cell] = (byte) color;
+        rows[y] |= 1 << x;
+        columns[x] |= 1 << y;
+        hash ^= CELL_KEYS[cell];
+    }
+
+    // Combined key of the filled cells of an occupancy word at row y
+    private static long rowHash(int y, int row)
+    {
+        long hash = 0;
+        for(; row != 0; row &= row - 1)
+            hash ^= CELL_KEYS[y * WIDTH + Integer.numberOfTrailingZeros(row)];
+        return hash;
+    }
+}
@@ -0,0 +1,15 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.Serializable;
+
+// A cell on the board, or an offset from a block's position.
+public class Cell implements Serializable {
+    public final int x;
+    public final int y;
+
+    public Cell(int x, int y)
+    {
+        this.x = x;
+        this.y = y;
+    }
+}
@@ -0,0 +1,99 @@
+package ca.alexcomeau.texmobile.game;
+
+// A copy of everything that's on screen, taken at the end of a frame.
+// The game fills these in and hands them out through a SnapshotBuffer, so they're reused instead of made every frame.
+// Never changes while a reader holds it.
+public final class FrameSnapshot implements GameSnapshot {
+    private final byte[] cells = new byte[Board.WIDTH * Board.HEIGHT];
+    private long version;
+    private int frames;
+    private Block.Shape pieceShape;
+    private int pieceRotation;
+    private int pieceX;
+    private int pieceY;
+    private Block.Shape nextShape;
+    private int score;
+    private int level;
+    private int maxLevel;
+    private Boolean gameOver;
+    private int locks;
+    private int clears;
+
+    FrameSnapshot() { }
+
+    // Called by the game thread while nobody else can see this snapshot
+    void copyFrom(GameManager game, Board board, long version)
+    {
+        this.version = version;
+        board.copyColors(cells);
+        frames = game.getFrames();
+        pieceShape = game.getPieceShape();
+        pieceRotation = game.getPieceRotation();
+        pieceX = game.getPieceX();
+        pieceY = game.getPieceY();
+        nextShape = game.getNextShape();
+        score = game.getScore();
+        level = game.getLevel();
+        maxLevel = game.getMaxLevel();
+        gameOver = game.getGameOver();
+        locks = game.getLocks();
+        clears = game.getClears();
+    }
+
+    // Compares the stack with a copy of what was drawn before, updating the copy.
+    // Returns the rows that were different, bit y for row y.
+    public int syncStack(byte[] drawn)
+    {
+        int changed = 0;
+        for(int y = 0; y < Board.HEIGHT; y++)
+        {
+            int start = y * Board.WIDTH;
+            for(int i = start; i < start + Board.WIDTH; i++)
+                if(drawn[i] != cells[i])
+                {
+                    System.arraycopy(cells, start, drawn, start, Board.WIDTH);
+                    changed |= 1 << y;
+                    break;
+                }
+        }
+        return changed;
+    }
+
+    // The rows the falling piece covers, bit y for row y
+    public int getPieceRows()
+    {
+        if(pieceShape == null)
+            return 0;
+
+        int height = pieceShape.getRowMasks(pieceRotation).length;
+        return ((1 << height) - 1) << (pieceY + pieceShape.getBottom(pieceRotation));
+    }
+
+    // Goes up by one with every snapshot published, so readers can tell them apart
+    public long getVersion() { return version; }
+    public int getFrames() { return frames; }
+    // How many pieces have been locked and how many clears there have been this game. Readers compare these to play sounds.
+    public int getLocks() { return locks; }
+    public int getClears() { return clears; }
+
+    @Override
+    public int getCell(int x, int y) { return cells[y * Board.WIDTH + x]; }
+    @Override
+    public Block.Shape getPieceShape() { return pieceShape; }
+    @Override
+    public int getPieceRotation() { return pieceRotation; }
+    @Override
+    public int getPieceX() { return pieceX; }
+    @Override
+    public int getPieceY() { return pieceY; }
+    @Override
+    public Block.Shape getNextShape() { return nextShape; }
+    @Override
+    public int getScore() { return score; }
+    @Override
+    public int getLevel() { return level; }
+    @Override
+    public int getMaxLevel() { return maxLevel; }
+    @Override
+    public Boolean getGameOver() { return gameOver; }
+}
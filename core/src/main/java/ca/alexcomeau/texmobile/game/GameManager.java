@@ -0,0 +1,637 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+public class GameManager implements GameSnapshot, Serializable {
+    // Save states. Bump the version whenever the layout changes.
+    private static final int STATE_MAGIC = 0x54584753; // "TXGS"
+    private static final int STATE_VERSION = 3;
+    private static final int GAME_OVER_NONE = 0;
+    private static final int GAME_OVER_WON = 1;
+    private static final int GAME_OVER_LOST = 2;
+    // The rules count frames, and are made for this many a second
+    public static final int FRAME_RATE = 30;
+
+    private Block currentBlock;
+    private Block nextBlock;
+    private Board gameBoard;
+    private int level;
+    private int score;
+    private int lockWait;
+    private int droppedLines;
+    private int combo;
+    private int spawnWait;
+    private int fallWait;
+    private int autoShiftWait;
+    private int lineClearWait;
+    private int elapsedFrames;
+    // Pieces locked and clears made this game. Renderers watch these for sounds.
+    private int locks;
+    private int clears;
+    private int lastInput;
+    private Randomizer randomizer;
+    private RuleSet rules;
+    private long seed;
+    private ReplayRecorder recorder;
+    private boolean grandmasterValid;
+    // Grandmaster checkpoints made so far, in order. The one after them failed if grandmasterValid is false,
+    // otherwise it's the next one to check.
+    private int checkpointsPassed;
+    // Where finished frames go for the renderer. Whoever draws the game sets it up again after a restore.
+    private transient SnapshotBuffer snapshots;
+    // The piece that locked last, where it locked. Not saved.
+    private transient Block lockedBlock;
+    private boolean spawned;
+    private Boolean gameOver;
+
+    // Pieces drop every gravity frames, if gravity > 0.
+    private int gravity;
+    // Pieces drop superGravity rows per frame, if gravity == 0.
+    private int superGravity;
+    // Pieces are spawned spawnDelay frames after a piece is locked.
+    private int spawnDelay;
+    // Blocks lock in place lockDelay frames after touching the stack. Gives time to rotate and move, especially in superGravity 20.
+    private int lockDelay;
+    // Frames to wait after a line is cleared before doing anything else. Rewards multiline clears.
+    private int lineClearDelay;
+    // When the game ends
+    private int maxLevel;
+    // Where it began. Together with maxLevel this picks the leaderboard.
+    private int startLevel;
+
+    // Where pieces spawn
+    private final int START_X = 3;
+    private final int START_Y = 17;
+    // Frames to wait before allowing consecutive duplicate inputs. Too low and they get accidentally doubled
+    private final int AUTO_SHIFT_DELAY = 7;
+
+    public GameManager() { this(new HistoryRandomizer()); }
+
+    public GameManager(Randomizer randomizer) { this(randomizer, RuleSet.STANDARD); }
+
+    public GameManager(Randomizer randomizer, RuleSet rules)
+    {
+        this.randomizer = randomizer;
+        this.rules = rules;
+    }
+
+    // Start the game with a random seed
+    public void start(int levelStart, int levelEnd) { start(levelStart, levelEnd, System.nanoTime()); }
+
+    // Start the game. The same seed always gives the same pieces.
+    public void start(int levelStart, int levelEnd, long seed)
+    {
+        // Initialize
+        gameBoard = new Board();
+        score = 0;
+        level = 0;
+        maxLevel = levelEnd;
+        startLevel = levelStart;
+        // If they're doing a full game they can attain grandmaster rank
+        grandmasterValid = rules.allowsGrandmaster(levelStart, levelEnd);
+        checkpointsPassed = 0;
+        addLevel(levelStart);
+        combo = 1;
+        gameOver = null;
+        elapsedFrames = 0;
+        spawnWait = 0;
+        lockWait = 0;
+        autoShiftWait = 0;
+        fallWait = 0;
+        locks = 0;
+        clears = 0;
+        lockedBlock = null;
+        lineClearWait = lineClearDelay;
+        lastInput = 0;
+
+        this.seed = seed;
+        randomizer.reset(seed);
+        if(recorder != null)
+            recorder.begin(RandomizerType.of(randomizer), rules, seed, levelStart, levelEnd);
+        currentBlock = new Block(START_X, START_Y, randomizer.first());
+        nextBlock = generateNewBlock();
+
+        publish();
+    }
+
+    // Move ahead a frame. The input is a mask of Input bits for the buttons being held.
+    public void advanceFrame(int in)
+    {
+        spawned = false;
+        elapsedFrames++;
+
+        if(recorder != null)
+            recorder.record(in);
+
+        if(lineClearWait < lineClearDelay)
+            lineClearWait ++;
+        else
+        {
+            // Work on a copy so we can mess with it without affecting the original
+            int input = in;
+
+            // Rotating every frame is not desired
+            if((lastInput & Input.ROTATIONS) != 0)
+                input &= ~Input.ROTATIONS;
+
+            // Check if any the received input is the same as last frame
+            if((input & lastInput) != 0)
+            {
+                // If so, wait some frames before accepting it again to avoid unintentional doubled inputs
+                // This needs to be checked even if there's no piece so they can "charge" fast movement
+                if (autoShiftWait < AUTO_SHIFT_DELAY && input != 0)
+                {
+                    // Remove the movements -- rotations were handled previously
+                    input &= ~Input.MOVEMENTS;
+                    autoShiftWait++;
+                }
+
+            }
+            else
+                autoShiftWait = 0;
+
+            // Update the last input, using the original because we might have removed some
+            lastInput = in;
+
+            if(currentBlock == null)
+            {
+                if(spawnWait++ >= spawnDelay)
+                {
+                    // Bring in the next block and generate a new next
+                    currentBlock = nextBlock;
+                    nextBlock = generateNewBlock();
+
+                    spawned = true;
+
+                    spawnWait = 0;
+                    fallWait = 0;
+                    droppedLines = 1;
+
+                    // A new block appearing increases the level by one, unless the level ends in 99 or is the second last
+                    if(!((level + 1) % 100 == 0 || level == maxLevel - 1))
+                        addLevel(1);
+                }
+            }
+
+            if(currentBlock != null)
+            {
+                if(spawned)
+                {
+                    // Only allow rotations on spawn
+                    if((in & Input.ROTATE_LEFT) != 0)
+                        handleInput(Input.ROTATE_LEFT);
+                    if((in & Input.ROTATE_RIGHT) != 0)
+                        handleInput(Input.ROTATE_RIGHT);
+                }
+                else
+                {
+                    // Always handled in the same order, no matter which button went down first, so replays match
+                    for(int button = 1; button <= input; button <<= 1)
+                        if((input & button) != 0)
+                            handleInput(button);
+                }
+
+                // If the new block isn't in a valid location upon spawning (and rotating), the game is lost
+                if(spawned)
+                    if(!gameBoard.checkBlock(currentBlock))
+                        gameOver = false;
+
+                // Check if the block is currently in a state of falling
+                if(gameBoard.checkDown(currentBlock))
+                {
+                    lockWait = 0;
+                    // Move the block down if enough time has passed
+                    if(gravity > 0)
+                    {
+                        fallWait++;
+                        if(fallWait >= gravity)
+                        {
+                            fallWait = 0;
+                            currentBlock.moveDown();
+                        }
+                    }
+                    else
+                    {
+                        // Drop as far as it can go, up to superGravity rows
+                        int rows = Math.min(superGravity, gameBoard.dropDistance(currentBlock));
+                        if(rows > 0)
+                            currentBlock.moveDown(rows);
+                    }
+                }
+                else
+                {
+                    lockWait++;
+                    // Check if the block needs to be locked
+                    if(lockWait >= lockDelay)
+                    {
+                        gameBoard.lockBlock(currentBlock);
+                        lockedBlock = currentBlock;
+                        lockWait = 0;
+                        locks++;
+                        // Check if locking that piece caused any lines to be cleared
+                        checkClears();
+                        currentBlock = null;
+                    }
+                }
+            }
+        }
+
+        publish();
+    }
+
+    // Hands a copy of the frame to whoever is drawing it
+    private void publish()
+    {
+        if(snapshots != null)
+            snapshots.publish(this, gameBoard);
+    }
+
+    // ===== Input handling methods ==========================================
+    private void handleInput(int button)
+    {
+        switch(button)
+        {
+            case Input.LEFT:
+                moveLeft();
+                break;
+            case Input.RIGHT:
+                moveRight();
+                break;
+            case Input.ROTATE_LEFT:
+                rotateLeft();
+                break;
+            case Input.ROTATE_RIGHT:
+                rotateRight();
+                break;
+            case Input.DOWN:
+            {
+                // Make the piece fall or lock immediately
+                lockWait = lockDelay;
+                fallWait = gravity;
+                droppedLines++;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void moveLeft()
+    {
+        if(gameBoard.checkLeft(currentBlock))
+            currentBlock.moveLeft();
+    }
+
+    private void moveRight() {
+        if (gameBoard.checkRight(currentBlock))
+            currentBlock.moveRight();
+    }
+
+    private void rotateLeft() { rotate(false); }
+
+    private void rotateRight() { rotate(true); }
+
+    // Rotates if it fits, or if it fits after a wall kick (a tap to the side). See Board.rotatedX.
+    private void rotate(boolean clockwise)
+    {
+        int x = gameBoard.rotatedX(currentBlock.getShape(), currentBlock.getRotation(),
+                currentBlock.getX(), currentBlock.getY(), clockwise);
+        if(x == Board.NO_ROTATION)
+            return;
+
+        if(x < currentBlock.getX())
+            currentBlock.moveLeft();
+        else if(x > currentBlock.getX())
+            currentBlock.moveRight();
+        if(clockwise)
+            currentBlock.rotateRight();
+        else
+            currentBlock.rotateLeft();
+    }
+    // ===== End input handling =============================================
+
+    // Checks for clears, clears them if so, and adds to the score and level
+    private void checkClears()
+    {
+        int linesCleared = 0;
+
+        // This only works because the shape rotations are in descending order. Check each row once
+        int checked = 0;
+        int y = currentBlock.getY();
+        for(Cell c : currentBlock.getRelativeCoordinates())
+            if ((checked & (1 << c.y)) == 0)
+            {
+                checked |= 1 << c.y;
+                if (gameBoard.checkLine(y + c.y))
+                {
+                    gameBoard.clearLine(y + c.y);
+                    linesCleared++;
+                }
+            }
+
+        if(linesCleared > 0)
+        {
+            // Multiplier for clearing the whole screen
+            int bravo = gameBoard.isEmpty() ? 4 : 1;
+
+            // Tetris: The Grand Master scoring method
+            score += (Math.ceil((level + linesCleared) / 4) + droppedLines)
+                    * linesCleared * ((linesCleared * 2) - 1)
+                    * combo * bravo;
+
+            // Add to the combo
+            combo += (linesCleared * 2) - 2;
+
+            addLevel(linesCleared);
+
+            // The game ends once the max level is reached.
+            if(level >= maxLevel)
+            {
+                level = maxLevel;
+                gameOver = true;
+            }
+
+            clears++;
+            lineClearWait = 0;
+        }
+        else
+            combo = 1;
+    }
+
+    // Generates a block of a random type.
+    private Block generateNewBlock() { return new Block(START_X, START_Y, randomizer.next()); }
+
+    private void addLevel(int toAdd)
+    {
+        level += toAdd;
+        updateSpeed();
+
+        // Grandmaster checkpoints come in order, and failing one means there's no point checking the rest
+        while(grandmasterValid && checkpointsPassed < rules.getCheckpoints()
+                && level >= rules.getCheckpointLevel(checkpointsPassed))
+        {
+            if(score >= rules.getCheckpointScore(checkpointsPassed) && within(rules.getCheckpointMillis(checkpointsPassed)))
+                checkpointsPassed++;
+            else
+                grandmasterValid = false;
+        }
+    }
+
+    // Gravity and the delays change depending on level
+    private void updateSpeed()
+    {
+        gravity = rules.getGravity(level);
+        superGravity = rules.getSuperGravity(level);
+        spawnDelay = rules.getSpawnDelay(level);
+        lockDelay = rules.getLockDelay(level);
+        lineClearDelay = rules.getLineClearDelay(level);
+    }
+
+    // Whether the game has taken at most the given number of milliseconds so far
+    private boolean within(int milliseconds)
+    {
+        return elapsedFrames * 1000L <= milliseconds * (long) FRAME_RATE;
+    }
+
+    public String getGrade() { return rules.getGrade(score, grandmasterValid); }
+
+    // ===== Snapshot view ================================================
+    @Override
+    public int getCell(int x, int y) { return gameBoard.getCell(x, y); }
+    @Override
+    public Block.Shape getPieceShape() { return currentBlock == null ? null : currentBlock.getShape(); }
+    @Override
+    public int getPieceRotation() { return currentBlock == null ? 0 : currentBlock.getRotation(); }
+    @Override
+    public int getPieceX() { return currentBlock == null ? 0 : currentBlock.getX(); }
+    @Override
+    public int getPieceY() { return currentBlock == null ? 0 : currentBlock.getY(); }
+    @Override
+    public Block.Shape getNextShape() { return nextBlock.getShape(); }
+
+    public Block.Shape[][] getStack() { return gameBoard.getStack(); }
+    public int getLevel() { return level; }
+    public int getMaxLevel() { return maxLevel; }
+    public int getStartLevel() { return startLevel; }
+    public int getScore() { return score; }
+    public int getFrames() { return elapsedFrames; }
+    public long getSeed() { return seed; }
+    // Records the input of every frame from the next start on, or stops recording if null
+    public void setRecorder(ReplayRecorder recorder) { this.recorder = recorder; }
+    public ReplayRecorder getRecorder() { return recorder; }
+    public int getLocks() { return locks; }
+    public int getClears() { return clears; }
+    public Boolean getGameOver() { return gameOver; }
+    // Whether a GM grade is still possible: a full game with no checkpoint failed yet
+    public boolean isGrandmasterValid() { return grandmasterValid; }
+    public int getCheckpointsPassed() { return checkpointsPassed; }
+    public Block getCurrentBlock() { return currentBlock; }
+    public Block getNextBlock() { return nextBlock; }
+    public Block getLockedBlock() { return lockedBlock; }
+
+    // Timing of the piece in play, for working out where it can get to
+    public int getGravity() { return gravity; }
+    public int getSuperGravity() { return superGravity; }
+    public int getLockDelay() { return lockDelay; }
+    public int getFallWait() { return fallWait; }
+    public int getLockWait() { return lockWait; }
+    public int getLastInput() { return lastInput; }
+    public Board getBoard() { return gameBoard; }
+    public RuleSet getRules() { return rules; }
+
+    // Publishes a snapshot at the end of every frame from now on, starting with the current one. null stops it.
+    public void setSnapshots(SnapshotBuffer snapshots)
+    {
+        this.snapshots = snapshots;
+        if(gameBoard != null)
+            publish();
+    }
+
+    // ===== Save state ==================================================
+    /**
+     * Writes the whole engine out in a fixed layout: a header, the randomizer, the counters and flags,
+     * both pieces, then the board at a nibble a cell. About 200 bytes. If there's a recorder,
+     * its replay follows in the replay format.
+     */
+    public void writeState(OutputStream stream) throws IOException { writeState(stream, recorder); }
+
+    private void writeState(OutputStream stream, ReplayRecorder recorder) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(STATE_MAGIC);
+        out.writeByte(STATE_VERSION);
+
+        out.writeUTF(rules.getName());
+        out.writeByte(RandomizerType.of(randomizer).ordinal());
+        randomizer.writeState(out);
+        out.writeLong(seed);
+
+        // Levels never pass 999
+        out.writeShort(level);
+        out.writeShort(maxLevel);
+        out.writeShort(startLevel);
+        out.writeInt(score);
+        out.writeInt(elapsedFrames);
+        out.writeInt(locks);
+        out.writeInt(clears);
+        out.writeInt(combo);
+        out.writeInt(droppedLines);
+        out.writeShort(lockWait);
+        out.writeShort(spawnWait);
+        out.writeShort(fallWait);
+        out.writeShort(autoShiftWait);
+        out.writeShort(lineClearWait);
+        out.writeByte(lastInput);
+
+        // Which checkpoints are still to come, as older versions had it, then how many were passed in the bits left over
+        int flags = grandmasterValid ? 1 : 0;
+        for(int i = 0; i < RuleSet.MAX_CHECKPOINTS; i++)
+            if(grandmasterValid && checkpointsPassed <= i)
+                flags |= 2 << i;
+        flags |= (spawned ? 16 : 0) | (checkpointsPassed << 5);
+        out.writeByte(flags);
+        out.writeByte(gameOver == null ? GAME_OVER_NONE : gameOver ? GAME_OVER_WON : GAME_OVER_LOST);
+
+        writeBlock(out, currentBlock);
+        writeBlock(out, nextBlock);
+        gameBoard.writeState(out);
+
+        out.writeBoolean(recorder != null);
+        if(recorder != null)
+            recorder.toReplay().write(out);
+        out.flush();
+    }
+
+    public static GameManager readState(InputStream stream) throws IOException { return readState(stream, null); }
+
+    // Plays the saved game by the given rules if there are some, otherwise by the ones it names
+    private static GameManager readState(InputStream stream, RuleSet known) throws IOException
+    {
+        DataInputStream in = new DataInputStream(stream);
+        if(in.readInt() != STATE_MAGIC)
+            throw new IOException("Not a saved game");
+        int version = in.readUnsignedByte();
+        if(version < 1 || version > STATE_VERSION)
+            throw new IOException("Unsupported save version " + version);
+
+        // Saves from before rule sets all played by the standard rules
+        String name = version >= 3 ? in.readUTF() : RuleSet.STANDARD.getName();
+        RuleSet rules = known != null ? known : RuleSet.forName(name);
+        int type = in.readUnsignedByte();
+        if(type >= RandomizerType.values().length)
+            throw new IOException("Unknown randomizer " + type);
+
+        GameManager game = new GameManager(RandomizerType.values()[type].create(), rules);
+        game.randomizer.readState(in);
+        game.seed = in.readLong();
+
+        // Version 1 had the levels as ints and no start level, which comes from the replay below if there is one
+        if(version >= 2)
+        {
+            game.level = in.readUnsignedShort();
+            game.maxLevel = in.readUnsignedShort();
+            game.startLevel = in.readUnsignedShort();
+        }
+        else
+        {
+            game.level = in.readInt();
+            game.maxLevel = in.readInt();
+        }
+        game.score = in.readInt();
+        game.elapsedFrames = in.readInt();
+        game.locks = in.readInt();
+        game.clears = in.readInt();
+        game.combo = in.readInt();
+        game.droppedLines = in.readInt();
+        // Older versions kept the gravity, which the rules now give for the level
+        if(version < 3)
+        {
+            in.readInt();
+            in.readInt();
+        }
+        game.updateSpeed();
+        game.lockWait = in.readUnsignedShort();
+        game.spawnWait = in.readUnsignedShort();
+        game.fallWait = in.readUnsignedShort();
+        game.autoShiftWait = in.readUnsignedShort();
+        game.lineClearWait = in.readUnsignedShort();
+        game.lastInput = in.readUnsignedByte();
+
+        int flags = in.readUnsignedByte();
+        game.grandmasterValid = (flags & 1) != 0;
+        game.spawned = (flags & 16) != 0;
+        game.checkpointsPassed = (flags >>> 5) & 3;
+        // Saves from before the count was kept still know it from the checkpoints to come, as long as none failed
+        if(game.grandmasterValid)
+            game.checkpointsPassed = Integer.numberOfTrailingZeros((flags >>> 1) | 8);
+        int over = in.readUnsignedByte();
+        game.gameOver = over == GAME_OVER_NONE ? null : over == GAME_OVER_WON;
+
+        game.currentBlock = readBlock(in);
+        game.nextBlock = readBlock(in);
+        if(game.nextBlock == null)
+            throw new IOException("Corrupt saved game");
+        game.gameBoard = Board.readState(in);
+
+        if(in.readBoolean())
+        {
+            Replay replay = Replay.read(in);
+            game.recorder = ReplayRecorder.resume(replay);
+            if(version == 1)
+                game.startLevel = replay.getStartLevel();
+        }
+
+        return game;
+    }
+
+    // A separate engine in the same state, randomizer included, for trying moves out on. Nothing is
+    // recorded or published from the copy.
+    public GameManager copy()
+    {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            writeState(bytes, null);
+            // Rules read from elsewhere can't be found again by name, so the copy plays by these ones
+            return readState(new ByteArrayInputStream(bytes.toByteArray()), rules);
+        } catch (IOException e) {
+            // Only memory is involved, and it reads back what it just wrote
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Four bytes: shape ordinal + 1 (0 for no block), rotation, x, y
+    private static void writeBlock(DataOutputStream out, Block block) throws IOException
+    {
+        if(block == null)
+        {
+            out.writeInt(0);
+            return;
+        }
+        out.writeByte(block.getShape().ordinal() + 1);
+        out.writeByte(block.getRotation());
+        out.writeByte(block.getX());
+        out.writeByte(block.getY());
+    }
+
+    private static Block readBlock(DataInputStream in) throws IOException
+    {
+        int shape = in.readUnsignedByte();
+        int rotation = in.readUnsignedByte();
+        int x = in.readByte();
+        int y = in.readByte();
+        if(shape == 0)
+            return null;
+
+        Block.Shape[] shapes = Block.Shape.values();
+        if(shape > shapes.length || rotation >= shapes[shape - 1].getRotations().length)
+            throw new IOException("Corrupt saved game");
+        return new Block(x, y, shapes[shape - 1], rotation);
+    }
+}
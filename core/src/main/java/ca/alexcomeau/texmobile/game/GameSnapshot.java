@@ -0,0 +1,20 @@
+package ca.alexcomeau.texmobile.game;
+
+// Read-only view of everything a renderer or HUD needs to show the game.
+public interface GameSnapshot {
+    // Shape ordinal + 1 of the stack cell at (x, y), or 0 if it's empty
+    int getCell(int x, int y);
+
+    // The falling piece, or a null shape if there isn't one right now
+    Block.Shape getPieceShape();
+    int getPieceRotation();
+    int getPieceX();
+    int getPieceY();
+
+    Block.Shape getNextShape();
+    int getScore();
+    int getLevel();
+    int getMaxLevel();
+    // null while playing, true if the game was won, false if it was lost
+    Boolean getGameOver();
+}
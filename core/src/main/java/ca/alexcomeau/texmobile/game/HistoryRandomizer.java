@@ -0,0 +1,98 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Tetris: The Grand Master randomizer. Re-rolls pieces that are in the last few generated, up to a limit.
+public class HistoryRandomizer implements Randomizer {
+    private static final Block.Shape[] SHAPES = Block.Shape.values();
+    // Number of pieces remembered
+    private static final int HISTORY_SIZE = 4;
+    // Number of times to attempt to generate a piece that's not in history
+    private static final int GENERATION_TRIES = 4;
+    // Only the first FIRST_CHOICES shapes can be the first piece
+    private static final int FIRST_CHOICES = 4;
+
+    private SeededRandom random;
+    // Ring buffer of shape ordinals, oldest at head
+    private byte[] history;
+    private int head;
+
+    public HistoryRandomizer()
+    {
+        random = new SeededRandom(System.nanoTime());
+        history = new byte[HISTORY_SIZE];
+        reset(System.nanoTime());
+    }
+
+    @Override
+    public void reset(long seed)
+    {
+        random.setSeed(seed);
+        head = 0;
+
+        // Start the history full of Zs.
+        for(int i = 0; i < HISTORY_SIZE; i++)
+            history[i] = (byte) Block.Shape.Z.ordinal();
+    }
+
+    @Override
+    public Block.Shape first()
+    {
+        return add(random.nextInt(FIRST_CHOICES));
+    }
+
+    @Override
+    public Block.Shape next()
+    {
+        int i = random.nextInt(SHAPES.length);
+        int j = 0;
+
+        // Generate a new number until there's one that's not in the history, or the limit is reached
+        while(inHistory(i) && j < GENERATION_TRIES)
+        {
+            i = random.nextInt(SHAPES.length);
+            j++;
+        }
+
+        return add(i);
+    }
+
+    @Override
+    public void writeState(DataOutputStream out) throws IOException
+    {
+        out.writeLong(random.getState());
+        out.write(history);
+        out.writeByte(head);
+    }
+
+    @Override
+    public void readState(DataInputStream in) throws IOException
+    {
+        random.setState(in.readLong());
+        in.readFully(history);
+        head = in.readUnsignedByte();
+        if(head >= HISTORY_SIZE)
+            throw new IOException("Corrupt randomizer state");
+        for(byte b : history)
+            if(b < 0 || b >= SHAPES.length)
+                throw new IOException("Corrupt randomizer state");
+    }
+
+    private boolean inHistory(int shape)
+    {
+        for(byte b : history)
+            if(b == shape)
+                return true;
+        return false;
+    }
+
+    // Take out the oldest element of history and add in this one
+    private Block.Shape add(int shape)
+    {
+        history[head] = (byte) shape;
+        head = (head + 1) % HISTORY_SIZE;
+        return SHAPES[shape];
+    }
+}
@@ -0,0 +1,30 @@
+package ca.alexcomeau.texmobile.game;
+
+// The buttons, as bits of an input mask. Names match the button tags in the layouts.
+public final class Input {
+    public static final int LEFT = 1;
+    public static final int RIGHT = 1 << 1;
+    public static final int DOWN = 1 << 2;
+    public static final int ROTATE_LEFT = 1 << 3;
+    public static final int ROTATE_RIGHT = 1 << 4;
+    public static final int COUNT = 5;
+
+    // Buttons that auto-shift when held
+    public static final int MOVEMENTS = LEFT | RIGHT | DOWN;
+    // Buttons that only count once per press
+    public static final int ROTATIONS = ROTATE_LEFT | ROTATE_RIGHT;
+
+    // Indexed by bit, which is also the order buttons are handled in
+    private static final String[] NAMES = {"left", "right", "down", "rotateLeft", "rotateRight"};
+
+    private Input() { }
+
+    // The bit for the named button, or 0 if there's no such button
+    public static int fromName(String name)
+    {
+        for(int bit = 0; bit < COUNT; bit++)
+            if(NAMES[bit].equals(name))
+                return 1 << bit;
+        return 0;
+    }
+}
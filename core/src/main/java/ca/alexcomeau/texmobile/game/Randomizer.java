@@ -0,0 +1,24 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+// Decides which pieces come next. Implementations must be deterministic for a given seed so games can be replayed.
+public interface Randomizer extends Serializable {
+    // Starts a new sequence from the given seed
+    void reset(long seed);
+
+    // The first piece of a game
+    Block.Shape first();
+
+    // Every piece after the first
+    Block.Shape next();
+
+    // Saves where the sequence is up to, in a fixed number of bytes for each type
+    void writeState(DataOutputStream out) throws IOException;
+
+    // Picks the sequence up where writeState left it
+    void readState(DataInputStream in) throws IOException;
+}
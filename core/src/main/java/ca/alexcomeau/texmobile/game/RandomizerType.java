@@ -0,0 +1,23 @@
+package ca.alexcomeau.texmobile.game;
+
+// The randomizers a game can be set up with. Ordinals are stored in replays, so only add to the end.
+public enum RandomizerType {
+    HISTORY,
+    BAG;
+
+    public Randomizer create()
+    {
+        switch(this)
+        {
+            case BAG:
+                return new BagRandomizer();
+            default:
+                return new HistoryRandomizer();
+        }
+    }
+
+    public static RandomizerType of(Randomizer randomizer)
+    {
+        return randomizer instanceof BagRandomizer ? BAG : HISTORY;
+    }
+}
@@ -0,0 +1,152 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Everything needed to play a game over again: the settings it was started with, and the input for every frame.
+ *
+ * Input is stored as runs of identical frames. Each run is the number of frames as a varint,
+ * then the input mask xor the previous run's mask. Holding a button or nothing at all takes two bytes.
+ */
+public class Replay {
+    private static final int MAGIC = 0x54585250; // "TXRP"
+    private static final int VERSION = 2;
+
+    private RandomizerType randomizer;
+    private RuleSet rules;
+    private long seed;
+    private int startLevel;
+    private int maxLevel;
+    private int frames;
+    private int runCount;
+    private int[] runLengths;
+    private byte[] runMasks;
+
+    // The run arrays are kept as they are, so they must be exactly runCount long
+    Replay(RandomizerType randomizer, RuleSet rules, long seed, int startLevel, int maxLevel,
+           int[] runLengths, byte[] runMasks, int runCount)
+    {
+        this.randomizer = randomizer;
+        this.rules = rules;
+        this.seed = seed;
+        this.startLevel = startLevel;
+        this.maxLevel = maxLevel;
+        this.runLengths = runLengths;
+        this.runMasks = runMasks;
+        this.runCount = runCount;
+
+        for(int i = 0; i < runCount; i++)
+            frames += runLengths[i];
+    }
+
+    public RandomizerType getRandomizer() { return randomizer; }
+    public RuleSet getRules() { return rules; }
+    public long getSeed() { return seed; }
+    public int getStartLevel() { return startLevel; }
+    public int getMaxLevel() { return maxLevel; }
+    public int getFrames() { return frames; }
+
+    int getRunCount() { return runCount; }
+    int getRunLength(int run) { return runLengths[run]; }
+    int getRunMask(int run) { return runMasks[run]; }
+
+    public void write(OutputStream stream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(randomizer.ordinal());
+        out.writeUTF(rules.getName());
+        out.writeLong(seed);
+        out.writeInt(startLevel);
+        out.writeInt(maxLevel);
+        out.writeInt(runCount);
+
+        int last = 0;
+        for(int i = 0; i < runCount; i++)
+        {
+            writeVarInt(out, runLengths[i]);
+            out.writeByte(runMasks[i] ^ last);
+            last = runMasks[i];
+        }
+        out.flush();
+    }
+
+    public static Replay read(InputStream stream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(stream);
+        if(in.readInt() != MAGIC)
+            throw new IOException("Not a replay");
+        int version = in.readUnsignedByte();
+        if(version < 1 || version > VERSION)
+            throw new IOException("Unsupported replay version " + version);
+
+        int type = in.readUnsignedByte();
+        if(type >= RandomizerType.values().length)
+            throw new IOException("Unknown randomizer " + type);
+
+        RandomizerType randomizer = RandomizerType.values()[type];
+        // Version 1 replays were all played by the standard rules
+        RuleSet rules = version >= 2 ? RuleSet.forName(in.readUTF()) : RuleSet.STANDARD;
+        long seed = in.readLong();
+        int startLevel = in.readInt();
+        int maxLevel = in.readInt();
+        int runCount = in.readInt();
+        if(runCount < 0)
+            throw new IOException("Corrupt replay");
+
+        int[] lengths = new int[runCount];
+        byte[] masks = new byte[runCount];
+        int last = 0;
+        for(int i = 0; i < runCount; i++)
+        {
+            lengths[i] = readVarInt(in);
+            last ^= in.readByte();
+            masks[i] = (byte) last;
+        }
+
+        return new Replay(randomizer, rules, seed, startLevel, maxLevel, lengths, masks, runCount);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupt replay");
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(!(o instanceof Replay))
+            return false;
+        Replay other = (Replay) o;
+        return randomizer == other.randomizer && rules.getName().equals(other.rules.getName()) && seed == other.seed
+                && startLevel == other.startLevel && maxLevel == other.maxLevel
+                && Arrays.equals(runLengths, other.runLengths) && Arrays.equals(runMasks, other.runMasks);
+    }
+
+    @Override
+    public int hashCode() { return (int) (seed ^ (seed >>> 32)) * 31 + frames; }
+}
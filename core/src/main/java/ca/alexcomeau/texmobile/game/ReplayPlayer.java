@@ -0,0 +1,55 @@
+package ca.alexcomeau.texmobile.game;
+
+// Plays a replay back on a fresh game, as fast as the engine can go.
+public class ReplayPlayer {
+    private Replay replay;
+    private GameManager game;
+    private int run;
+    private int runFrame;
+    private int frame;
+
+    public ReplayPlayer(Replay replay)
+    {
+        this.replay = replay;
+        game = new GameManager(replay.getRandomizer().create(), replay.getRules());
+        game.start(replay.getStartLevel(), replay.getMaxLevel(), replay.getSeed());
+    }
+
+    // Advances the game a frame. Returns false once the replay has run out of input.
+    public boolean step()
+    {
+        if(run >= replay.getRunCount())
+            return false;
+
+        game.advanceFrame(replay.getRunMask(run));
+        frame++;
+
+        if(++runFrame == replay.getRunLength(run))
+        {
+            run++;
+            runFrame = 0;
+        }
+        return true;
+    }
+
+    // Plays up to the given frame, or the end of the replay if that comes first
+    public void fastForward(int toFrame)
+    {
+        while(frame < toFrame && step()) { }
+    }
+
+    public GameManager playToEnd()
+    {
+        while(step()) { }
+        return game;
+    }
+
+    public GameManager getGame() { return game; }
+    public int getFrame() { return frame; }
+
+    // Whether playing the replay gives the score that was claimed for it
+    public static boolean verify(Replay replay, int score)
+    {
+        return new ReplayPlayer(replay).playToEnd().getScore() == score;
+    }
+}
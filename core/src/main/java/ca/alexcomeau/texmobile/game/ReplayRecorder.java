@@ -0,0 +1,70 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+// Collects the input of a game as it's played. Frames are run-length encoded as they come in.
+public class ReplayRecorder implements Serializable {
+    private RandomizerType randomizer;
+    private RuleSet rules;
+    private long seed;
+    private int startLevel;
+    private int maxLevel;
+    private int[] runLengths;
+    private byte[] runMasks;
+    private int runCount;
+
+    public ReplayRecorder()
+    {
+        runLengths = new int[64];
+        runMasks = new byte[64];
+    }
+
+    // Called by the game when it starts
+    void begin(RandomizerType randomizer, RuleSet rules, long seed, int startLevel, int maxLevel)
+    {
+        this.randomizer = randomizer;
+        this.rules = rules;
+        this.seed = seed;
+        this.startLevel = startLevel;
+        this.maxLevel = maxLevel;
+        runCount = 0;
+    }
+
+    // Picks up recording where a saved game's replay left off
+    static ReplayRecorder resume(Replay replay)
+    {
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(replay.getRandomizer(), replay.getRules(), replay.getSeed(), replay.getStartLevel(), replay.getMaxLevel());
+        for(int i = 0; i < replay.getRunCount(); i++)
+            recorder.addRun(replay.getRunLength(i), replay.getRunMask(i));
+        return recorder;
+    }
+
+    // Called by the game every frame
+    void record(int mask)
+    {
+        if(runCount > 0 && runMasks[runCount - 1] == mask)
+            runLengths[runCount - 1]++;
+        else
+            addRun(1, mask);
+    }
+
+    private void addRun(int length, int mask)
+    {
+        if(runCount == runLengths.length)
+        {
+            runLengths = Arrays.copyOf(runLengths, runCount * 2);
+            runMasks = Arrays.copyOf(runMasks, runCount * 2);
+        }
+        runLengths[runCount] = length;
+        runMasks[runCount] = (byte) mask;
+        runCount++;
+    }
+
+    public Replay toReplay()
+    {
+        return new Replay(randomizer, rules, seed, startLevel, maxLevel,
+                Arrays.copyOf(runLengths, runCount), Arrays.copyOf(runMasks, runCount), runCount);
+    }
+}
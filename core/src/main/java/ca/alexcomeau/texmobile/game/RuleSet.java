@@ -0,0 +1,287 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The numbers a mode plays by: the speed and delays at each level, the grades, and the grandmaster checkpoints.
+ * They're read from a rule file (see rules/standard.rules for the format) and laid out in arrays indexed
+ * by level and by score / 100, so the game looks them up instead of walking through a list of ranges.
+ * A new mode is a new rule file.
+ */
+public final class RuleSet implements Serializable {
+    // Save states have room for this many checkpoints passed
+    public static final int MAX_CHECKPOINTS = 3;
+    private static final Map<String, RuleSet> LOADED = new HashMap<>();
+    public static final RuleSet STANDARD;
+
+    static
+    {
+        try {
+            STANDARD = forName("standard");
+        } catch (IOException e) {
+            // It's built in, so it's there unless the build is broken
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final String name;
+    // [level], the last entry carries on past the end
+    private final int[] gravity;
+    private final int[] superGravity;
+    private final int[] spawnDelay;
+    private final int[] lockDelay;
+    private final int[] lineClearDelay;
+    // [score / 100] to an index in the grade arrays, the last entry carries on past the end
+    private final byte[] gradeAt;
+    private final String[] gradeNames;
+    private final boolean[] gradeNeedsGrandmaster;
+    private final int[] checkpointLevels;
+    private final int[] checkpointScores;
+    private final int[] checkpointMillis;
+
+    private RuleSet(String name, Parser parser) throws IOException
+    {
+        this.name = name;
+        if(!parser.speeds.containsKey(0) || !parser.timings.containsKey(0))
+            throw new IOException("Rules " + name + " need gravity and timing from level 0");
+        if(parser.grades.isEmpty() || parser.gradeScores.get(0) != 0)
+            throw new IOException("Rules " + name + " need a grade from score 0");
+
+        int levels = Math.max(parser.speeds.lastKey(), parser.timings.lastKey()) + 1;
+        gravity = new int[levels];
+        superGravity = new int[levels];
+        spawnDelay = new int[levels];
+        lockDelay = new int[levels];
+        lineClearDelay = new int[levels];
+        for(int level = 0; level < levels; level++)
+        {
+            int[] speed = parser.speeds.floorEntry(level).getValue();
+            int[] timing = parser.timings.floorEntry(level).getValue();
+            gravity[level] = speed[0];
+            superGravity[level] = speed[1];
+            spawnDelay[level] = timing[0];
+            lockDelay[level] = timing[1];
+            lineClearDelay[level] = timing[2];
+        }
+
+        int grades = parser.grades.size();
+        gradeNames = parser.grades.toArray(new String[grades]);
+        gradeNeedsGrandmaster = new boolean[grades];
+        gradeAt = new byte[parser.gradeScores.get(grades - 1) / 100 + 1];
+        for(int i = 0; i < grades; i++)
+        {
+            gradeNeedsGrandmaster[i] = parser.gradesNeedingGrandmaster.contains(i);
+            int end = i + 1 < grades ? parser.gradeScores.get(i + 1) / 100 : gradeAt.length;
+            for(int hundreds = parser.gradeScores.get(i) / 100; hundreds < end; hundreds++)
+                gradeAt[hundreds] = (byte) i;
+        }
+        if(gradeNeedsGrandmaster[0])
+            throw new IOException("Rules " + name + " need a grade without grandmaster to fall back on");
+
+        int checkpoints = parser.checkpoints.size();
+        checkpointLevels = new int[checkpoints];
+        checkpointScores = new int[checkpoints];
+        checkpointMillis = new int[checkpoints];
+        for(int i = 0; i < checkpoints; i++)
+        {
+            int[] checkpoint = parser.checkpoints.get(i);
+            checkpointLevels[i] = checkpoint[0];
+            checkpointScores[i] = checkpoint[1];
+            checkpointMillis[i] = checkpoint[2];
+        }
+    }
+
+    /**
+     * The built-in rules of the given name, read from rules/[name].rules next to this class.
+     * Each one is only read once.
+     */
+    public static RuleSet forName(String name) throws IOException
+    {
+        synchronized(LOADED)
+        {
+            RuleSet rules = LOADED.get(name);
+            if(rules != null)
+                return rules;
+
+            // Names come out of saved games too, so don't let them point anywhere else
+            if(!name.matches("[a-z0-9_]+"))
+                throw new IOException("Bad rules name " + name);
+            InputStream in = RuleSet.class.getResourceAsStream("rules/" + name + ".rules");
+            if(in == null)
+                throw new IOException("No rules called " + name);
+            try {
+                rules = read(name, new InputStreamReader(in, StandardCharsets.UTF_8));
+            } finally {
+                in.close();
+            }
+
+            LOADED.put(name, rules);
+            return rules;
+        }
+    }
+
+    // Compiles a rule file. Anything it doesn't understand is an IOException naming the line.
+    // Saves and replays only keep the name, so only rules forName can find again can be restored from them.
+    public static RuleSet read(String name, Reader source) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(source);
+        Parser parser = new Parser();
+        int number = 0;
+        for(String line = reader.readLine(); line != null; line = reader.readLine())
+        {
+            number++;
+            int comment = line.indexOf('#');
+            if(comment >= 0)
+                line = line.substring(0, comment);
+            line = line.trim();
+            if(line.isEmpty())
+                continue;
+
+            try {
+                parser.parse(line.split("\\s+"));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(name + " line " + number + ": " + e.getMessage());
+            }
+        }
+        return new RuleSet(name, parser);
+    }
+
+    public String getName() { return name; }
+
+    // Frames between falling a row, or 0 if pieces fall getSuperGravity rows every frame
+    public int getGravity(int level) { return gravity[at(level)]; }
+    public int getSuperGravity(int level) { return superGravity[at(level)]; }
+    public int getSpawnDelay(int level) { return spawnDelay[at(level)]; }
+    public int getLockDelay(int level) { return lockDelay[at(level)]; }
+    public int getLineClearDelay(int level) { return lineClearDelay[at(level)]; }
+
+    public String getGrade(int score, boolean grandmaster)
+    {
+        int grade = gradeAt[Math.min(score / 100, gradeAt.length - 1)];
+        while(gradeNeedsGrandmaster[grade] && !grandmaster)
+            grade--;
+        return gradeNames[grade];
+    }
+
+    // Only a full game, from 0 to the last checkpoint, can get a grandmaster grade
+    public boolean allowsGrandmaster(int startLevel, int maxLevel)
+    {
+        return checkpointLevels.length > 0 && startLevel == 0
+                && maxLevel == checkpointLevels[checkpointLevels.length - 1];
+    }
+
+    public int getCheckpoints() { return checkpointLevels.length; }
+    public int getCheckpointLevel(int checkpoint) { return checkpointLevels[checkpoint]; }
+    public int getCheckpointScore(int checkpoint) { return checkpointScores[checkpoint]; }
+    // Most the game can have taken when it reaches the checkpoint's level
+    public int getCheckpointMillis(int checkpoint) { return checkpointMillis[checkpoint]; }
+
+    private int at(int level) { return Math.min(level, gravity.length - 1); }
+
+    // Inner class =================================================================
+    // Collects the lines of a rule file before they're laid out
+    private static class Parser {
+        final TreeMap<Integer, int[]> speeds = new TreeMap<>();
+        final TreeMap<Integer, int[]> timings = new TreeMap<>();
+        final List<String> grades = new ArrayList<>();
+        final List<Integer> gradeScores = new ArrayList<>();
+        final List<Integer> gradesNeedingGrandmaster = new ArrayList<>();
+        final List<int[]> checkpoints = new ArrayList<>();
+
+        void parse(String[] words)
+        {
+            switch(words[0])
+            {
+                case "gravity":
+                {
+                    count(words, 4);
+                    int frames = number(words[2]);
+                    int rows = number(words[3]);
+                    if((frames == 0) == (rows == 0))
+                        throw new IllegalArgumentException("gravity needs either frames or rows");
+                    if(rows > Board.HEIGHT)
+                        throw new IllegalArgumentException("gravity can't fall more than the board");
+                    add(speeds, number(words[1]), new int[] { frames, rows });
+                    break;
+                }
+                case "timing":
+                    count(words, 5);
+                    add(timings, number(words[1]), new int[] { number(words[2]), number(words[3]), number(words[4]) });
+                    break;
+                case "grade":
+                {
+                    if(words.length != 3 && !(words.length == 4 && words[3].equals("gm")))
+                        throw new IllegalArgumentException("grade takes a name, a score and maybe gm");
+                    int score = number(words[2]);
+                    if(score % 100 != 0)
+                        throw new IllegalArgumentException("grade scores go in hundreds");
+                    if(!gradeScores.isEmpty() && score <= gradeScores.get(gradeScores.size() - 1))
+                        throw new IllegalArgumentException("grades go from the lowest score up");
+                    if(grades.size() > Byte.MAX_VALUE)
+                        throw new IllegalArgumentException("too many grades");
+                    if(words.length == 4)
+                        gradesNeedingGrandmaster.add(grades.size());
+                    grades.add(words[1]);
+                    gradeScores.add(score);
+                    break;
+                }
+                case "checkpoint":
+                {
+                    count(words, 4);
+                    int level = number(words[1]);
+                    if(checkpoints.size() == MAX_CHECKPOINTS)
+                        throw new IllegalArgumentException("at most " + MAX_CHECKPOINTS + " checkpoints");
+                    if(!checkpoints.isEmpty() && level <= checkpoints.get(checkpoints.size() - 1)[0])
+                        throw new IllegalArgumentException("checkpoints go from the lowest level up");
+                    checkpoints.add(new int[] { level, number(words[2]), time(words[3]) });
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("unknown rule " + words[0]);
+            }
+        }
+
+        private static void add(TreeMap<Integer, int[]> rules, int level, int[] values)
+        {
+            if(rules.put(level, values) != null)
+                throw new IllegalArgumentException("level " + level + " is already set");
+        }
+
+        private static void count(String[] words, int expected)
+        {
+            if(words.length != expected)
+                throw new IllegalArgumentException(words[0] + " takes " + (expected - 1) + " numbers");
+        }
+
+        private static int number(String word)
+        {
+            int value = Integer.parseInt(word);
+            if(value < 0)
+                throw new IllegalArgumentException("negative number " + word);
+            return value;
+        }
+
+        // minutes:seconds to milliseconds
+        private static int time(String word)
+        {
+            int colon = word.indexOf(':');
+            if(colon < 0)
+                throw new IllegalArgumentException("times go as minutes:seconds");
+            int seconds = number(word.substring(colon + 1));
+            if(seconds >= 60)
+                throw new IllegalArgumentException("bad time " + word);
+            return (number(word.substring(0, colon)) * 60 + seconds) * 1000;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped file holding the latest save state, in two slots that are written in turn.
+ *
+ * Each slot is a header (magic, sequence number, length, CRC32 of the sequence number, length and data)
+ * followed by the data. A write always goes to the slot not holding the newest save, so if it's torn
+ * by a crash the checksum won't match and the save before it is still there to read.
+ */
+public final class SaveFile implements Closeable {
+    private static final int MAGIC = 0x54585356; // "TXSV"
+    private static final int HEADER_SIZE = 20;
+    // Room for the engine state and the replay of a long game
+    public static final int SLOT_SIZE = 128 * 1024;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final CRC32 crc = new CRC32();
+    private final byte[] header = new byte[12];
+    // Sequence number of the newest good slot, 0 if there isn't one
+    private long sequence;
+
+    public SaveFile(File path) throws IOException
+    {
+        file = new RandomAccessFile(path, "rw");
+        try {
+            map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2 * SLOT_SIZE);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        sequence = Math.max(Math.max(check(0), check(1)), 0);
+    }
+
+    // The newest save that's intact, or null if there isn't one
+    public synchronized byte[] read()
+    {
+        long first = check(0);
+        long second = check(1);
+        if(first < 0 && second < 0)
+            return null;
+
+        int base = (first > second ? 0 : 1) * SLOT_SIZE;
+        byte[] data = new byte[map.getInt(base + 12)];
+        map.position(base + HEADER_SIZE);
+        map.get(data);
+        return data;
+    }
+
+    // Writes a save over the older slot and waits for it to reach the disk
+    public synchronized void write(byte[] data) throws IOException
+    {
+        if(data.length > SLOT_SIZE - HEADER_SIZE)
+            throw new IOException("Save state too big: " + data.length);
+
+        long next = sequence + 1;
+        int base = slot(next) * SLOT_SIZE;
+
+        // Data first, then the header that vouches for it
+        map.position(base + HEADER_SIZE);
+        map.put(data);
+        map.putLong(base + 4, next);
+        map.putInt(base + 12, data.length);
+        map.putInt(base + 16, checksum(crc, header, next, data, data.length));
+        map.putInt(base, MAGIC);
+        map.force();
+
+        sequence = next;
+    }
+
+    // Throws away both saves, for when the game they belong to is over
+    public synchronized void clear()
+    {
+        map.putInt(0, 0);
+        map.putInt(SLOT_SIZE, 0);
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException { file.close(); }
+
+    // Whether the file at the path holds an intact save. Only reads it, without mapping or decoding anything,
+    // for when all that's needed is whether there's a game to go back to.
+    public static boolean hasSave(File path)
+    {
+        if(!path.exists())
+            return false;
+
+        CRC32 crc = new CRC32();
+        byte[] header = new byte[12];
+        try {
+            RandomAccessFile in = new RandomAccessFile(path, "r");
+            try {
+                for(int slot = 0; slot < 2; slot++)
+                {
+                    int base = slot * SLOT_SIZE;
+                    if(in.length() < base + HEADER_SIZE)
+                        break;
+
+                    in.seek(base);
+                    int magic = in.readInt();
+                    long seq = in.readLong();
+                    int length = in.readInt();
+                    int stored = in.readInt();
+                    if(!validHeader(slot, magic, seq, length))
+                        continue;
+
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+                    if(checksum(crc, header, seq, data, length) == stored)
+                        return true;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Cut short somewhere, so not a save to go back to
+        }
+        return false;
+    }
+
+    // Sequence number of the slot if it holds an intact save, otherwise -1
+    private long check(int slot)
+    {
+        int base = slot * SLOT_SIZE;
+        long seq = map.getLong(base + 4);
+        int length = map.getInt(base + 12);
+        if(!validHeader(slot, map.getInt(base), seq, length))
+            return -1;
+
+        byte[] data = new byte[length];
+        map.position(base + HEADER_SIZE);
+        map.get(data);
+        return checksum(crc, header, seq, data, length) == map.getInt(base + 16) ? seq : -1;
+    }
+
+    // Whether a slot's header makes sense, before the checksum is worked out
+    private static boolean validHeader(int slot, int magic, long seq, int length)
+    {
+        return magic == MAGIC && seq > 0 && slot(seq) == slot && length >= 0 && length <= SLOT_SIZE - HEADER_SIZE;
+    }
+
+    private static int checksum(CRC32 crc, byte[] header, long seq, byte[] data, int length)
+    {
+        for(int i = 0; i < 8; i++)
+            header[i] = (byte) (seq >>> (56 - i * 8));
+        for(int i = 0; i < 4; i++)
+            header[8 + i] = (byte) (length >>> (24 - i * 8));
+
+        crc.reset();
+        crc.update(header, 0, header.length);
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static int slot(long seq) { return (int) (seq & 1); }
+}
@@ -0,0 +1,41 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.io.Serializable;
+
+// The same generator as java.util.Random, so old seeds give the same pieces,
+// but with its whole state in one long that can be saved and put back.
+final class SeededRandom implements Serializable {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    SeededRandom(long seed) { setSeed(seed); }
+
+    void setSeed(long seed) { state = (seed ^ MULTIPLIER) & MASK; }
+
+    long getState() { return state; }
+    void setState(long state) { this.state = state & MASK; }
+
+    // Same results as Random.nextInt(bound)
+    int nextInt(int bound)
+    {
+        int r = next(31);
+        int m = bound - 1;
+
+        // Powers of two just take the high bits
+        if((bound & m) == 0)
+            return (int) ((bound * (long) r) >> 31);
+
+        // Throw away the values that would make the low numbers more likely
+        for(int u = r; u - (r = u % bound) + m < 0; u = next(31));
+        return r;
+    }
+
+    private int next(int bits)
+    {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+}
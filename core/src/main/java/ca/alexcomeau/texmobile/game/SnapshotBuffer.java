@@ -0,0 +1,40 @@
+package ca.alexcomeau.texmobile.game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Triple buffer of snapshots between the game thread and one reader thread.
+// The game always has a snapshot to write into and the reader always has the newest finished one,
+// so neither waits on the other and the game can run ahead of the display.
+public final class SnapshotBuffer {
+    // Set on the shared index while the snapshot there hasn't been picked up yet
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final FrameSnapshot[] snapshots = { new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot() };
+    // The one being written, only touched by the game thread
+    private int back = 0;
+    // The last one published, traded between the threads
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // The one being read, only touched by the reader
+    private int front = 2;
+    private long published;
+
+    // ===== Game thread ===================================================
+    void publish(GameManager game, Board board)
+    {
+        snapshots[back].copyFrom(game, board, ++published);
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    // ===== Reader thread =================================================
+    // Whether something was published since the last acquire
+    public boolean isFresh() { return (middle.get() & FRESH) != 0; }
+
+    // The newest snapshot. It stays valid until the next call, which may hand it back to the game.
+    public FrameSnapshot acquire()
+    {
+        if(isFresh())
+            front = middle.getAndSet(front) & INDEX;
+        return snapshots[front];
+    }
+}
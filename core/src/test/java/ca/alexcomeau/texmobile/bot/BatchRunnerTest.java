@@ -0,0 +1,93 @@
+package ca.alexcomeau.texmobile.bot;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.Input;
+import ca.alexcomeau.texmobile.game.Replay;
+import ca.alexcomeau.texmobile.game.ReplayRecorder;
+import ca.alexcomeau.texmobile.game.RuleSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRunnerTest {
+    @Test
+    public void parallelRunMatchesPlayingOneByOne() throws Exception
+    {
+        List<Replay> replays = new ArrayList<>();
+        for(int i = 0; i < 12; i++)
+            replays.add(record(i, i % 3 == 0 ? 500 : 0));
+
+        List<BatchRunner.Job> jobs = new ArrayList<>();
+        String[] expected = new String[replays.size()];
+        for(int i = 0; i < replays.size(); i++)
+        {
+            jobs.add(BatchRunner.replayGame(replays.get(i)));
+            expected[i] = BatchRunner.toCsv(i, BatchRunner.replayGame(replays.get(i)).play());
+        }
+
+        StringWriter csv = new StringWriter();
+        new BatchRunner(3).run(jobs, csv);
+
+        // Lines come out as games finish, so put them back in order first
+        String[] lines = csv.toString().split("\n");
+        assertEquals(BatchRunner.csvHeader(RuleSet.STANDARD), lines[0]);
+        String[] games = Arrays.copyOfRange(lines, 1, lines.length);
+        Arrays.sort(games, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) { return index(a) - index(b); }
+        });
+        assertEquals(Arrays.asList(expected), Arrays.asList(games));
+    }
+
+    @Test
+    public void checkpointsNotReachedAreBlank()
+    {
+        GameManager game = BatchRunner.replayGame(record(1, 0)).play();
+        String[] columns = BatchRunner.toCsv(0, game).split(",");
+
+        // Mashing buttons doesn't get anywhere near level 251
+        assertEquals("-", columns[9]);
+        assertEquals("-", columns[10]);
+        assertEquals("-", columns[11]);
+    }
+
+    @Test
+    public void columnsFollowTheRules() throws Exception
+    {
+        // A short mode with a single checkpoint that only needs the game to get there
+        RuleSet rules = RuleSet.read("sprint", new StringReader(
+                "gravity 0 4 0\ntiming 0 10 15 10\ngrade A 0\ngrade B 10000 gm\ncheckpoint 50 0 30:00\n"));
+        StringWriter csv = new StringWriter();
+        new BatchRunner(2, rules).run(Arrays.asList(BatchRunner.botGame(rules, 3, 0, 50, 0, null)), csv);
+
+        String[] lines = csv.toString().split("\n");
+        assertTrue(lines[0].endsWith(",result,checkpoint1"));
+        String[] columns = lines[1].split(",");
+        assertEquals(10, columns.length);
+        assertEquals("won", columns[8]);
+        assertEquals("pass", columns[9]);
+    }
+
+    private static int index(String line) { return Integer.parseInt(line.substring(0, line.indexOf(','))); }
+
+    private static Replay record(long seed, int startLevel)
+    {
+        GameManager game = new GameManager();
+        game.setRecorder(new ReplayRecorder());
+        game.start(startLevel, 999, seed);
+        Random random = new Random(seed);
+        while(game.getGameOver() == null)
+            game.advanceFrame(random.nextInt(1 << Input.COUNT));
+        return game.getRecorder().toReplay();
+    }
+}
@@ -0,0 +1,103 @@
+package ca.alexcomeau.texmobile.bot;
+
+import org.junit.Test;
+
+import ca.alexcomeau.texmobile.game.Block;
+import ca.alexcomeau.texmobile.game.GameManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BotTest {
+    @Test
+    public void piecesLockWherePlanned()
+    {
+        // Slow gravity and 20G move pieces very differently
+        for(int startLevel : new int[] { 0, 500 })
+        {
+            Bot bot = new Bot(Heuristic.DEFAULT, 2, Bot.DEFAULT_BUDGET);
+            try {
+                GameManager game = new GameManager();
+                game.start(startLevel, 999, 5);
+
+                for(int piece = 0; piece < 30 && game.getGameOver() == null; piece++)
+                {
+                    while(game.getPieceShape() == null && game.getGameOver() == null)
+                        game.advanceFrame(0);
+                    if(game.getGameOver() != null)
+                        break;
+
+                    Placement placement = bot.choose(game);
+                    assertNotNull(placement);
+                    int locks = game.getLocks();
+                    for(int input : placement.getInputs())
+                        game.advanceFrame(input);
+
+                    assertEquals(locks + 1, game.getLocks());
+                    Block locked = game.getLockedBlock();
+                    assertEquals(placement.getRotation(), locked.getRotation());
+                    assertEquals(placement.getX(), locked.getX());
+                    assertEquals(placement.getY(), locked.getY());
+                }
+            } finally {
+                bot.close();
+            }
+        }
+    }
+
+    @Test
+    public void outOfTimeStillPlaysWhereItSays()
+    {
+        // Already late before it starts, so every choice is whatever was found first
+        Bot bot = new Bot(Heuristic.DEFAULT, 1, 1);
+        try {
+            GameManager game = newGame();
+            for(int piece = 0; piece < 10 && game.getGameOver() == null; piece++)
+            {
+                while(game.getPieceShape() == null && game.getGameOver() == null)
+                    game.advanceFrame(0);
+                if(game.getGameOver() != null)
+                    break;
+
+                Placement placement = bot.choose(game);
+                assertNotNull(placement);
+                int[] inputs = placement.getInputs();
+                int locks = game.getLocks();
+                for(int i = 0; i < inputs.length; i++)
+                {
+                    // Locking early would leave the rest of the input to the next piece
+                    assertEquals(locks, game.getLocks());
+                    game.advanceFrame(inputs[i]);
+                }
+                assertEquals(locks + 1, game.getLocks());
+                assertEquals(placement.getRotation(), game.getLockedBlock().getRotation());
+                assertEquals(placement.getX(), game.getLockedBlock().getX());
+                assertEquals(placement.getY(), game.getLockedBlock().getY());
+            }
+        } finally {
+            bot.close();
+        }
+    }
+
+    @Test
+    public void botKeepsPlaying()
+    {
+        Bot bot = new Bot();
+        try {
+            GameManager game = new BotPlayer(bot).play(newGame(), 4000);
+
+            assertTrue("still alive", game.getGameOver() == null || game.getGameOver());
+            assertTrue("cleared lines", game.getClears() > 5);
+        } finally {
+            bot.close();
+        }
+    }
+
+    private static GameManager newGame()
+    {
+        GameManager game = new GameManager();
+        game.start(0, 999, 11);
+        return game;
+    }
+}
@@ -0,0 +1,176 @@
+package ca.alexcomeau.texmobile.bot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import ca.alexcomeau.texmobile.game.BagRandomizer;
+import ca.alexcomeau.texmobile.game.Block;
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.Input;
+import ca.alexcomeau.texmobile.game.RandomizerType;
+import ca.alexcomeau.texmobile.game.RuleSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MoveGeneratorTest {
+    @Test
+    public void everyMoveLocksWhereItSays()
+    {
+        MoveGenerator generator = new MoveGenerator();
+        for(int startLevel : new int[] { 0, 250, 500 })
+        {
+            GameManager game = new GameManager();
+            game.start(startLevel, 999, 17);
+            Random random = new Random(4);
+
+            for(int piece = 0; piece < 40 && game.getGameOver() == null; piece++)
+            {
+                // Mess the stack up a bit with random play so there's something to get around
+                while(game.getPieceShape() == null && game.getGameOver() == null)
+                    game.advanceFrame(random.nextInt(1 << Input.COUNT));
+                if(game.getGameOver() != null)
+                    break;
+
+                checkMoves(generator, game);
+
+                while(game.getPieceShape() != null && game.getGameOver() == null)
+                    game.advanceFrame(random.nextInt(1 << Input.COUNT));
+            }
+        }
+    }
+
+    @Test
+    public void longWaitsFromTheRules() throws IOException
+    {
+        // TGM's own 30 frame lock delay, with gravity slower than the standard rules ever get
+        RuleSet rules = RuleSet.read("slow", new StringReader("gravity 0 64 0\ntiming 0 15 30 21\ngrade A 0\n"));
+        RuleSet quicker = RuleSet.read("quicker", new StringReader("gravity 0 64 0\ntiming 0 15 15 21\ngrade A 0\n"));
+        MoveGenerator generator = new MoveGenerator();
+
+        // A longer lock delay only gives the piece more time, so it gets everywhere it could before
+        List<Move> quick = generator.generate(firstPiece(quicker));
+        List<Move> slow = generator.generate(firstPiece(rules));
+        assertTrue(!quick.isEmpty());
+        for(Move move : quick)
+            assertTrue(contains(slow, move));
+
+        GameManager game = firstPiece(rules);
+        Random random = new Random(8);
+        for(int piece = 0; piece < 15 && game.getGameOver() == null; piece++)
+        {
+            while(game.getPieceShape() == null && game.getGameOver() == null)
+                game.advanceFrame(random.nextInt(1 << Input.COUNT));
+            if(game.getGameOver() != null)
+                break;
+
+            checkMoves(generator, game);
+            while(game.getPieceShape() != null && game.getGameOver() == null)
+                game.advanceFrame(random.nextInt(1 << Input.COUNT));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void waitsTooLongToSearch() throws IOException
+    {
+        RuleSet rules = RuleSet.read("glacial", new StringReader("gravity 0 5000 0\ntiming 0 15 5000 21\ngrade A 0\n"));
+        new MoveGenerator().generate(firstPiece(rules));
+    }
+
+    @Test
+    public void shortestInputUnder20G()
+    {
+        // At 20G the piece lands on the first frame, whatever's pressed. Buttons have to be let go before they're
+        // pressed again, so k columns over is k presses with a frame between each, the first landing it too, then
+        // down to lock: 2k frames. Staying where it spawned still takes a frame to land and one to lock.
+        GameManager game = pieceOnEmptyBoard(Block.Shape.T, 500);
+        List<Move> moves = new MoveGenerator().generate(game);
+        for(int columns = 0; columns <= 3; columns++)
+            for(int direction : new int[] { -1, 1 })
+            {
+                Move move = find(moves, game.getPieceRotation(), game.getPieceX() + direction * columns);
+                assertEquals("columns " + direction * columns, Math.max(2, 2 * columns), move.getInputs().length);
+            }
+    }
+
+    @Test
+    public void emptyBoardHasOnePlacementPerFootprint()
+    {
+        // Across the floor of an empty board: an I lies in 7 places and stands in 10, an O fits in 9
+        assertEquals(17, placementsOnEmptyBoard(Block.Shape.I));
+        assertEquals(9, placementsOnEmptyBoard(Block.Shape.O));
+        assertEquals(8 + 9, placementsOnEmptyBoard(Block.Shape.S));
+        assertEquals(8 + 9 + 8 + 9, placementsOnEmptyBoard(Block.Shape.T));
+    }
+
+    private static int placementsOnEmptyBoard(Block.Shape shape)
+    {
+        return new MoveGenerator().generate(pieceOnEmptyBoard(shape, 0)).size();
+    }
+
+    private static GameManager pieceOnEmptyBoard(Block.Shape shape, int startLevel)
+    {
+        // The history randomizer never starts on an S, Z or O, the bag can start on anything
+        for(long seed = 0; ; seed++)
+        {
+            GameManager game = new GameManager(RandomizerType.BAG.create());
+            game.start(startLevel, 999, seed);
+            while(game.getPieceShape() == null)
+                game.advanceFrame(0);
+            if(game.getPieceShape() == shape)
+                return game;
+        }
+    }
+
+    private static Move find(List<Move> moves, int rotation, int x)
+    {
+        for(Move move : moves)
+            if(move.getRotation() == rotation && move.getX() == x)
+                return move;
+        throw new AssertionError("no move to rotation " + rotation + ", x " + x);
+    }
+
+    private static GameManager firstPiece(RuleSet rules)
+    {
+        GameManager game = new GameManager(new BagRandomizer(), rules);
+        game.start(0, 999, 3);
+        game.advanceFrame(0);
+        return game;
+    }
+
+    private static boolean contains(List<Move> moves, Move move)
+    {
+        for(Move other : moves)
+            if(other.getRotation() == move.getRotation() && other.getX() == move.getX() && other.getY() == move.getY())
+                return true;
+        return false;
+    }
+
+    // Plays every move found on a copy of the game, and checks it locks the piece where it says
+    private static void checkMoves(MoveGenerator generator, GameManager game)
+    {
+        List<Move> moves = generator.generate(game);
+        assertTrue(!moves.isEmpty());
+        for(Move move : moves)
+        {
+            GameManager copy = game.copy();
+            int[] inputs = move.getInputs();
+            for(int i = 0; i < inputs.length; i++)
+            {
+                // The piece locks on the last input, not before it
+                assertEquals(game.getLocks(), copy.getLocks());
+                copy.advanceFrame(inputs[i]);
+            }
+
+            assertEquals(game.getLocks() + 1, copy.getLocks());
+            Block locked = copy.getLockedBlock();
+            assertEquals(move.getRotation(), locked.getRotation());
+            assertEquals(move.getX(), locked.getX());
+            assertEquals(move.getY(), locked.getY());
+        }
+    }
+}
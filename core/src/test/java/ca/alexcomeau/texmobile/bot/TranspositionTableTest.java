@@ -0,0 +1,129 @@
+package ca.alexcomeau.texmobile.bot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import ca.alexcomeau.texmobile.game.GameManager;
+import ca.alexcomeau.texmobile.game.HistoryRandomizer;
+import ca.alexcomeau.texmobile.game.RuleSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TranspositionTableTest {
+    @Test
+    public void hashFollowsTheStack()
+    {
+        Bot bot = new Bot(Heuristic.DEFAULT, 2, 0);
+        try {
+            BotPlayer player = new BotPlayer(bot);
+            GameManager game = newGame();
+            assertEquals(0, game.getBoard().getHash());
+
+            for(int frame = 0; frame < 3000 && game.getGameOver() == null; frame++)
+            {
+                game.advanceFrame(player.nextInput(game));
+                // A copy works its hash out from scratch
+                assertEquals("frame " + frame, game.copy().getBoard().getHash(), game.getBoard().getHash());
+            }
+            assertTrue("cleared lines", game.getClears() > 0);
+        } finally {
+            bot.close();
+        }
+    }
+
+    @Test
+    public void deeperAndNewerEntriesStay()
+    {
+        // Small enough for a single bucket, so every key fights for the same four slots
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(4, table.getCapacity());
+
+        table.put(1, 3, 1.0);
+        table.put(2, 1, 2.0);
+        table.put(3, 2, 3.0);
+        table.put(4, 1, 4.0);
+
+        // Shallower results don't replace deeper ones, and don't answer deeper questions
+        table.put(1, 1, -1.0);
+        assertEquals(1.0, table.get(1, 3), 0.0);
+        assertTrue(Double.isNaN(table.get(4, 2)));
+
+        // Key 1 gets used again in the new search, so of the old ones left key 2 is the shallowest
+        table.newSearch();
+        table.get(1, 1);
+        table.put(5, 1, 5.0);
+        assertTrue(Double.isNaN(table.get(2, 1)));
+        assertEquals(1.0, table.get(1, 1), 0.0);
+        assertEquals(3.0, table.get(3, 1), 0.0);
+        assertEquals(4.0, table.get(4, 1), 0.0);
+        assertEquals(5.0, table.get(5, 1), 0.0);
+
+        table.clear();
+        assertTrue(Double.isNaN(table.get(5, 1)));
+    }
+
+    @Test
+    public void highLevelsKeepTheRulesInTheKey() throws IOException
+    {
+        // The same numbers under another name, so only the name tells the keys apart
+        RuleSet renamed = RuleSet.read("renamed", new InputStreamReader(
+                RuleSet.class.getResourceAsStream("rules/standard.rules"), StandardCharsets.UTF_8));
+        for(int maxLevel : new int[] { 999, 2048, 5000 })
+        {
+            GameManager standard = new GameManager(new HistoryRandomizer(), RuleSet.STANDARD);
+            GameManager other = new GameManager(new HistoryRandomizer(), renamed);
+            standard.start(maxLevel - 100, maxLevel, 11);
+            other.start(maxLevel - 100, maxLevel, 11);
+            assertNotEquals("max level " + maxLevel, TranspositionTable.key(standard), TranspositionTable.key(other));
+        }
+    }
+
+    @Test
+    public void staysInBudget()
+    {
+        for(long budget : new long[] { 1000, 1 << 20, TranspositionTable.DEFAULT_BUDGET, 3 << 20 })
+        {
+            long used = (long) new TranspositionTable(budget).getCapacity() * TranspositionTable.ENTRY_BYTES;
+            assertTrue(used + " of " + budget, used <= budget && used * 2 > budget);
+        }
+    }
+
+    @Test
+    public void sharedTableDoesNotChangeThePlay()
+    {
+        TranspositionTable shared = new TranspositionTable();
+        GameManager first = play(shared);
+        // The second game finds everything the first one stored
+        GameManager second = play(shared);
+        GameManager alone = play(new TranspositionTable());
+
+        for(GameManager game : new GameManager[] { second, alone })
+        {
+            assertEquals(first.getLocks(), game.getLocks());
+            assertEquals(first.getScore(), game.getScore());
+            assertEquals(first.getBoard().getHash(), game.getBoard().getHash());
+        }
+    }
+
+    private static GameManager play(TranspositionTable table)
+    {
+        Bot bot = new Bot(Heuristic.DEFAULT, 2, 0, table);
+        try {
+            return new BotPlayer(bot).play(newGame(), 1500);
+        } finally {
+            bot.close();
+        }
+    }
+
+    private static GameManager newGame()
+    {
+        GameManager game = new GameManager();
+        game.start(0, 999, 11);
+        return game;
+    }
+}
@@ -0,0 +1,104 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure the work the game does every frame doesn't allocate anything.
+ */
+public class AllocationTest {
+    private static final int ITERATIONS = 10000;
+    // Measurements are retried a few times, since class loading and the like can show up in any single one
+    private static final int TRIALS = 5;
+
+    @Test
+    public void collisionChecksDoNotAllocate()
+    {
+        final Board board = new Board();
+        final Block block = new Block(3, 17, Block.Shape.T);
+
+        // Put something on the board so the checks have to look at filled rows
+        board.lockBlock(new Block(0, 0, Block.Shape.I));
+
+        assertEquals("bytes allocated", 0, leastAllocated(new Runnable() {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < ITERATIONS; i++)
+                    runChecks(board, block);
+            }
+        }));
+    }
+
+    @Test
+    public void steadyStateFrameDoesNotAllocate()
+    {
+        // At level 0 a piece takes hundreds of frames to fall, so nothing spawns or locks in the measured frames
+        final GameManager game = new GameManager();
+        game.start(0, 999, 1);
+        // Publishing the frame for the renderer is part of every frame
+        final SnapshotBuffer snapshots = new SnapshotBuffer();
+        game.setSnapshots(snapshots);
+        for(int i = 0; i < 20; i++)
+            game.advanceFrame(0);
+
+        final int[] input = {Input.LEFT, Input.LEFT | Input.ROTATE_RIGHT, 0, Input.RIGHT, Input.ROTATE_LEFT, Input.RIGHT};
+        assertEquals("bytes allocated", 0, leastAllocated(new Runnable() {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < 30; i++)
+                {
+                    game.advanceFrame(input[i % input.length]);
+                    snapshots.acquire();
+                }
+            }
+        }));
+        assertTrue("a piece is still falling", game.getCurrentBlock() != null);
+    }
+
+    private boolean runChecks(Board board, Block block)
+    {
+        boolean result = board.checkBlock(block);
+        result &= board.checkLeft(block);
+        result &= board.checkRight(block);
+        result &= board.checkDown(block);
+        result &= board.checkRotateLeft(block);
+        result &= board.checkRotateRight(block);
+        result &= board.checkShape(Block.Shape.I, 1, 0, 0);
+        result &= board.checkLine(0);
+        result &= board.dropDistance(block) > 0;
+        return result;
+    }
+
+    // The fewest bytes the work allocated over a few runs, not counting what measuring takes
+    static long leastAllocated(Runnable work)
+    {
+        long overhead = Long.MAX_VALUE;
+        long least = Long.MAX_VALUE;
+
+        for(int i = 0; i < TRIALS; i++)
+        {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+
+        for(int i = 0; i < TRIALS; i++)
+        {
+            long before = allocatedBytes();
+            work.run();
+            least = Math.min(least, allocatedBytes() - before);
+        }
+        return Math.max(0, least - overhead);
+    }
+
+    static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
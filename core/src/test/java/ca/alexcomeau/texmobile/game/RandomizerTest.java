@@ -0,0 +1,63 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RandomizerTest {
+    @Test
+    public void sameSeedGivesSamePieces()
+    {
+        Randomizer a = new HistoryRandomizer();
+        Randomizer b = new HistoryRandomizer();
+        a.reset(1234);
+        b.reset(1234);
+
+        assertEquals(a.first(), b.first());
+        for(int i = 0; i < 1000; i++)
+            assertEquals(a.next(), b.next());
+    }
+
+    @Test
+    public void seededRandomMatchesJavaRandom()
+    {
+        // Replays recorded before the randomizers had their own generator have to deal the same pieces
+        SeededRandom ours = new SeededRandom(99);
+        Random theirs = new Random(99);
+        for(int i = 0; i < 10000; i++)
+        {
+            int bound = 1 + i % 13;
+            assertEquals(theirs.nextInt(bound), ours.nextInt(bound));
+        }
+    }
+
+    @Test
+    public void firstPieceIsNeverSOrZ()
+    {
+        Randomizer r = new HistoryRandomizer();
+        for(long seed = 0; seed < 1000; seed++)
+        {
+            r.reset(seed);
+            Block.Shape first = r.first();
+            assertTrue(first != Block.Shape.S && first != Block.Shape.Z);
+        }
+    }
+
+    @Test
+    public void bagDealsEveryShapeOnce()
+    {
+        Randomizer r = new BagRandomizer();
+        r.reset(42);
+
+        for(int bag = 0; bag < 100; bag++)
+        {
+            int seen = 0;
+            for(int i = 0; i < Block.Shape.values().length; i++)
+                seen |= 1 << r.next().ordinal();
+            assertEquals((1 << Block.Shape.values().length) - 1, seen);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayTest {
+    @Test
+    public void replayReproducesTheGame() throws IOException
+    {
+        GameManager game = new GameManager();
+        game.setRecorder(new ReplayRecorder());
+        game.start(0, 999, 99);
+
+        // Hold random buttons for a few frames at a time until the game ends
+        Random random = new Random(7);
+        while(game.getGameOver() == null)
+        {
+            int mask = random.nextInt(1 << Input.COUNT);
+            for(int hold = 1 + random.nextInt(8); hold > 0 && game.getGameOver() == null; hold--)
+                game.advanceFrame(mask);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        game.getRecorder().toReplay().write(out);
+        Replay replay = Replay.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(game.getRecorder().toReplay(), replay);
+        assertEquals(game.getFrames(), replay.getFrames());
+        assertTrue("replay is compact", out.size() < game.getFrames());
+
+        GameManager played = new ReplayPlayer(replay).playToEnd();
+        assertEquals(game.getScore(), played.getScore());
+        assertEquals(game.getLevel(), played.getLevel());
+        assertEquals(game.getFrames(), played.getFrames());
+        assertEquals(game.getGameOver(), played.getGameOver());
+        assertTrue(ReplayPlayer.verify(replay, game.getScore()));
+    }
+
+    @Test
+    public void fastForwardStopsAtTheFrame()
+    {
+        ReplayRecorder recorder = new ReplayRecorder();
+        GameManager game = new GameManager(new BagRandomizer());
+        game.setRecorder(recorder);
+        game.start(500, 999, 3);
+        for(int i = 0; i < 300; i++)
+            game.advanceFrame(i % 40 < 5 ? Input.LEFT : 0);
+
+        ReplayPlayer player = new ReplayPlayer(recorder.toReplay());
+        player.fastForward(120);
+        assertEquals(120, player.getFrame());
+        assertEquals(120, player.getGame().getFrames());
+    }
+}
@@ -0,0 +1,117 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RuleSetTest {
+    @Test
+    public void standardRulesKeepTheOldCurve()
+    {
+        RuleSet rules = RuleSet.STANDARD;
+        // Level, gravity, super gravity, from either side of every step of the old ladder
+        int[][] speeds = {
+                { 0, 32, 0 }, { 29, 32, 0 }, { 30, 21, 0 }, { 35, 16, 0 }, { 49, 13, 0 }, { 50, 10, 0 },
+                { 60, 8, 0 }, { 70, 4, 0 }, { 80, 3, 0 }, { 139, 3, 0 }, { 140, 2, 0 }, { 170, 32, 0 },
+                { 199, 32, 0 }, { 200, 4, 0 }, { 220, 2, 0 }, { 230, 1, 0 }, { 250, 1, 0 }, { 251, 0, 1 },
+                { 300, 0, 2 }, { 330, 0, 3 }, { 360, 0, 4 }, { 400, 0, 5 }, { 420, 0, 4 }, { 450, 0, 3 },
+                { 499, 0, 3 }, { 500, 0, 20 }, { 999, 0, 20 }, { 1002, 0, 20 }
+        };
+        for(int[] speed : speeds)
+        {
+            assertEquals("level " + speed[0], speed[1], rules.getGravity(speed[0]));
+            assertEquals("level " + speed[0], speed[2], rules.getSuperGravity(speed[0]));
+            assertEquals(15, rules.getSpawnDelay(speed[0]));
+            assertEquals(15, rules.getLockDelay(speed[0]));
+            assertEquals(21, rules.getLineClearDelay(speed[0]));
+        }
+
+        assertEquals("9", rules.getGrade(0, false));
+        assertEquals("9", rules.getGrade(399, false));
+        assertEquals("8", rules.getGrade(400, false));
+        assertEquals("S1", rules.getGrade(21999, true));
+        assertEquals("S9", rules.getGrade(125999, true));
+        assertEquals("S9", rules.getGrade(126000, false));
+        assertEquals("GM", rules.getGrade(126000, true));
+        assertEquals("GM", rules.getGrade(5000000, true));
+
+        assertTrue(rules.allowsGrandmaster(0, 999));
+        assertFalse(rules.allowsGrandmaster(100, 999));
+        assertFalse(rules.allowsGrandmaster(0, 500));
+        assertEquals(3, rules.getCheckpoints());
+        assertEquals(255000, rules.getCheckpointMillis(0));
+    }
+
+    @Test
+    public void gamePlaysByItsRules() throws IOException
+    {
+        RuleSet rules = RuleSet.read("instant", new StringReader(
+                "# 20G from the start\ngravity 0 0 20\ntiming 0 4 8 0\ngrade A 0\n"));
+        GameManager game = new GameManager(new BagRandomizer(), rules);
+        game.start(0, 999, 5);
+
+        game.advanceFrame(0);
+        assertEquals(rules.getName(), game.getRules().getName());
+        assertEquals(0, game.getBoard().dropDistance(game.getCurrentBlock()));
+        assertEquals(8, game.getLockDelay());
+        assertEquals("A", game.getGrade());
+        assertFalse(game.isGrandmasterValid());
+
+        // Touching down on the first frame, it locks the eighth frame after
+        for(int frame = 0; frame < 8; frame++)
+            game.advanceFrame(0);
+        assertEquals(1, game.getLocks());
+    }
+
+    @Test
+    public void copyKeepsRulesThatWereRead() throws IOException
+    {
+        RuleSet rules = RuleSet.read("instant", new StringReader("gravity 0 0 20\ntiming 0 4 8 0\ngrade A 0\n"));
+        GameManager game = new GameManager(new BagRandomizer(), rules);
+        game.start(0, 999, 5);
+        for(int frame = 0; frame < 40; frame++)
+            game.advanceFrame(0);
+
+        // forName has never heard of these rules, so they have to come across as they are
+        GameManager copy = game.copy();
+        assertTrue(copy.getRules() == rules);
+        for(int frame = 0; frame < 100; frame++)
+        {
+            game.advanceFrame(0);
+            copy.advanceFrame(0);
+        }
+        assertEquals(game.getLocks(), copy.getLocks());
+        assertEquals(game.getBoard().getHash(), copy.getBoard().getHash());
+    }
+
+    @Test
+    public void badRulesSayWhere()
+    {
+        String[] bad = {
+                "gravity 0 32 0\ntiming 0 15 15 21\ngrade 9 0\nspeed 3\n",
+                "gravity 0 32 0\ntiming 0 15 15 21\ngrade 9 0\ngrade 8 450\n",
+                "gravity 0 32 0\ntiming 0 15 15 21\ngrade 9 0\ncheckpoint 500 1 1:00\ncheckpoint 400 1 1:00\n",
+                "gravity 0 32 4\ntiming 0 15 15 21\ngrade 9 0\n",
+        };
+        for(String rules : bad)
+            try {
+                RuleSet.read("bad", new StringReader(rules));
+                fail(rules);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 4") || e.getMessage().contains("line 5")
+                        || e.getMessage().contains("line 1"));
+            }
+    }
+
+    @Test(expected = IOException.class)
+    public void namesStayInTheRulesFolder() throws IOException
+    {
+        RuleSet.forName("../rules/standard");
+    }
+}
@@ -0,0 +1,95 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SaveFileTest {
+    @Test
+    public void readsTheNewestSave() throws IOException
+    {
+        File path = File.createTempFile("save", ".bin");
+        try {
+            SaveFile save = new SaveFile(path);
+            assertNull(save.read());
+            save.write(new byte[] {1, 2, 3});
+            save.write(new byte[] {4, 5});
+            save.write(new byte[] {6});
+            save.close();
+
+            // Still there when opened again
+            SaveFile reopened = new SaveFile(path);
+            assertTrue(Arrays.equals(new byte[] {6}, reopened.read()));
+            reopened.write(new byte[] {7});
+            assertTrue(Arrays.equals(new byte[] {7}, reopened.read()));
+            reopened.close();
+        } finally {
+            path.delete();
+        }
+    }
+
+    @Test
+    public void tornWriteFallsBackToThePreviousSave() throws IOException
+    {
+        File path = File.createTempFile("save", ".bin");
+        try {
+            SaveFile save = new SaveFile(path);
+            save.write(new byte[] {1, 2, 3});
+            save.write(new byte[] {4, 5, 6});
+            save.close();
+
+            // Saves alternate starting from the second slot, so the newest is in the first. Knock out part of it like a crash would.
+            RandomAccessFile raw = new RandomAccessFile(path, "rw");
+            raw.seek(21);
+            raw.write(0);
+            raw.close();
+
+            SaveFile reopened = new SaveFile(path);
+            assertTrue(Arrays.equals(new byte[] {1, 2, 3}, reopened.read()));
+            reopened.clear();
+            assertNull(reopened.read());
+            reopened.close();
+        } finally {
+            path.delete();
+        }
+    }
+
+    @Test
+    public void hasSaveOnlyForAnIntactOne() throws IOException
+    {
+        File path = File.createTempFile("save", ".bin");
+        try {
+            path.delete();
+            assertFalse(SaveFile.hasSave(path));
+
+            SaveFile save = new SaveFile(path);
+            assertFalse(SaveFile.hasSave(path));
+            save.write(new byte[] {1, 2, 3});
+            assertTrue(SaveFile.hasSave(path));
+            save.close();
+
+            // The only save is in the second slot, so breaking it leaves nothing
+            RandomAccessFile raw = new RandomAccessFile(path, "rw");
+            raw.seek(SaveFile.SLOT_SIZE + 21);
+            raw.write(0);
+            raw.close();
+            assertFalse(SaveFile.hasSave(path));
+
+            save = new SaveFile(path);
+            save.write(new byte[] {4});
+            assertTrue(SaveFile.hasSave(path));
+            save.clear();
+            assertFalse(SaveFile.hasSave(path));
+            save.close();
+        } finally {
+            path.delete();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SaveStateTest {
+    @Test
+    public void restoredGamePlaysOnTheSame() throws IOException
+    {
+        for(RandomizerType type : RandomizerType.values())
+        {
+            GameManager game = new GameManager(type.create());
+            game.setRecorder(new ReplayRecorder());
+            game.start(0, 999, 21);
+            Random random = new Random(3);
+            play(game, random, 2000);
+
+            GameManager restored = GameManager.readState(new ByteArrayInputStream(save(game)));
+
+            // Same input from here on has to give the same game
+            long inputSeed = random.nextLong();
+            play(game, new Random(inputSeed), 3000);
+            play(restored, new Random(inputSeed), 3000);
+
+            assertEquals(game.getScore(), restored.getScore());
+            assertEquals(game.getLevel(), restored.getLevel());
+            assertEquals(game.getFrames(), restored.getFrames());
+            assertEquals(game.getGameOver(), restored.getGameOver());
+            assertEquals(game.getGrade(), restored.getGrade());
+            assertEquals(game.getStartLevel(), restored.getStartLevel());
+            for(int y = 0; y < Board.HEIGHT; y++)
+                for(int x = 0; x < Board.WIDTH; x++)
+                    assertEquals(game.getCell(x, y), restored.getCell(x, y));
+
+            // The recording carried on too
+            assertEquals(game.getRecorder().toReplay(), restored.getRecorder().toReplay());
+        }
+    }
+
+    @Test
+    public void stateIsSmall() throws IOException
+    {
+        GameManager game = new GameManager();
+        game.start(0, 999, 21);
+        play(game, new Random(3), 2000);
+
+        assertTrue(save(game).length < 200);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherData() throws IOException
+    {
+        GameManager.readState(new ByteArrayInputStream(new byte[64]));
+    }
+
+    private static byte[] save(GameManager game) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        game.writeState(out);
+        return out.toByteArray();
+    }
+
+    private static void play(GameManager game, Random random, int frames)
+    {
+        for(int i = 0; i < frames && game.getGameOver() == null; i++)
+            game.advanceFrame(random.nextInt(1 << Input.COUNT));
+    }
+}
@@ -0,0 +1,81 @@
+package ca.alexcomeau.texmobile.game;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotBufferTest {
+    @Test
+    public void readerGetsTheNewestFrame()
+    {
+        GameManager game = new GameManager();
+        game.start(0, 999, 5);
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        game.setSnapshots(snapshots);
+
+        // The game runs ahead, the reader only sees where it ended up
+        for(int i = 0; i < 10; i++)
+            game.advanceFrame(Input.LEFT);
+
+        assertTrue(snapshots.isFresh());
+        FrameSnapshot snapshot = snapshots.acquire();
+        assertFalse("picked up", snapshots.isFresh());
+        assertEquals(game.getFrames(), snapshot.getFrames());
+        assertEquals(game.getPieceX(), snapshot.getPieceX());
+        assertEquals(game.getPieceY(), snapshot.getPieceY());
+        assertEquals(game.getNextShape(), snapshot.getNextShape());
+
+        // Nothing new, so the same one comes back
+        assertTrue(snapshot == snapshots.acquire());
+    }
+
+    @Test
+    public void snapshotsAreReused()
+    {
+        GameManager game = new GameManager();
+        game.start(0, 999, 5);
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        game.setSnapshots(snapshots);
+
+        Set<FrameSnapshot> seen = Collections.newSetFromMap(new IdentityHashMap<FrameSnapshot, Boolean>());
+        long version = 0;
+        for(int i = 0; i < 100; i++)
+        {
+            game.advanceFrame(i % 3 == 0 ? Input.DOWN : 0);
+            FrameSnapshot snapshot = snapshots.acquire();
+            assertTrue("versions go up", snapshot.getVersion() > version);
+            version = snapshot.getVersion();
+            seen.add(snapshot);
+        }
+        assertTrue(seen.size() <= 3);
+    }
+
+    @Test
+    public void syncStackFindsChangedRows()
+    {
+        GameManager game = new GameManager();
+        game.start(0, 999, 5);
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        game.setSnapshots(snapshots);
+        byte[] drawn = new byte[Board.WIDTH * Board.HEIGHT];
+
+        assertEquals(0, snapshots.acquire().syncStack(drawn));
+
+        // Drop pieces until one locks
+        while(game.getLocks() == 0)
+            game.advanceFrame(Input.DOWN);
+
+        int changed = snapshots.acquire().syncStack(drawn);
+        assertTrue(changed != 0);
+        for(int y = 0; y < Board.HEIGHT; y++)
+            for(int x = 0; x < Board.WIDTH; x++)
+                assertEquals(game.getCell(x, y), drawn[y * Board.WIDTH + x]);
+        assertEquals(0, snapshots.acquire().syncStack(drawn));
+    }
+}